@@ -0,0 +1,57 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+// Board creation and read-only queries of a position
+@State(Scope.Thread)
+public class BoardBenchmark {
+    @Param({
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+    })
+    public String fen;
+
+    private Board board;
+    private Move move;
+
+    @Setup
+    public void setUp() throws FENFormatException {
+        board = new Board(fen);
+        move = board.getPossibleMoves().get(0);
+    }
+
+    // FEN parsing together with the first moves generation
+    @Benchmark
+    public Board create() throws FENFormatException {
+        return new Board(fen);
+    }
+
+    // Same as create, but reusing the board instance
+    @Benchmark
+    public Board reset() throws FENFormatException {
+        board.reset(fen, 0, 0, 0);
+        return board;
+    }
+
+    // The list is cached by the board, so a move is made and taken back to have it generated and built again
+    @Benchmark
+    public List<Move> possibleMoves() throws IllegalMoveException {
+        board.makeMove(move);
+        board.unmakeMove();
+        return board.getPossibleMoves();
+    }
+
+    @Benchmark
+    public String buildFEN() {
+        return board.buildFEN();
+    }
+}
@@ -0,0 +1,48 @@
+package com.doublechess.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+// Clock work per move and per tick with lots of live games, timed by a fake time source
+@State(Scope.Thread)
+public class ClockServiceBenchmark {
+    @Param({"1000", "200000"})
+    public int games;
+
+    private long time;
+    private ClockService clock;
+    private ClockService.Timer[] timers;
+    private Random random = new Random(1);
+
+    @Setup
+    public void setUp() {
+        clock = new ClockService(() -> time, 10);
+        timers = new ClockService.Timer[games];
+        for (int i = 0; i < games; i++) {
+            // Flagged games start again, so the count of live games stays the same
+            int index = i;
+            timers[i] = clock.schedule(nextDeadline(), () -> clock.reschedule(timers[index], nextDeadline()));
+        }
+    }
+
+    // Timer of a game moved to the next deadline, as it's done on every move
+    @Benchmark
+    public void reschedule() {
+        clock.reschedule(timers[random.nextInt(games)], nextDeadline());
+    }
+
+    @Benchmark
+    public void tick() {
+        time += 10;
+        clock.tick();
+    }
+
+    private long nextDeadline() {
+        return time + 1000 + random.nextInt(600_000);
+    }
+}
@@ -0,0 +1,56 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CompletableFuture;
+
+// Load test of the game host: many games are played at once, the score is moves per second.
+// Compare the thread counts to see how it scales with cores.
+@State(Scope.Benchmark)
+public class GameHostBenchmark {
+    private static final int GAMES = 1000;
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private GameHost host;
+    private String[] gameIds = new String[GAMES];
+
+    @Setup
+    public void setUp() {
+        host = new GameHost(threads);
+        for (int i = 0; i < GAMES; i++) {
+            gameIds[i] = "game" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        host.close();
+    }
+
+    // All the games are played to the end, moves of different games are interleaved
+    @Benchmark
+    @OperationsPerInvocation(GAMES * TestGames.OPERA_GAME_PLIES)
+    public void playGames() throws FENFormatException {
+        for (String gameId : gameIds) {
+            host.createGame(gameId);
+        }
+        for (String move : TestGames.OPERA_GAME) {
+            for (String gameId : gameIds) {
+                host.move(gameId, move);
+            }
+        }
+        CompletableFuture<?>[] removed = new CompletableFuture<?>[GAMES];
+        for (int i = 0; i < GAMES; i++) {
+            removed[i] = host.removeGame(gameIds[i]);
+        }
+        CompletableFuture.allOf(removed).join();
+    }
+}
@@ -0,0 +1,34 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// Whole game played on a new board by squares, the opera game of TestGames
+@State(Scope.Benchmark)
+public class GameReplayBenchmark {
+    // Shared by all benchmark threads, it's warm after the first game
+    private final MoveCache moveCache = new MoveCache(1024);
+
+    @Benchmark
+    public Board replay() throws FENFormatException, IllegalMoveException {
+        return replay(new Board());
+    }
+
+    @Benchmark
+    public Board replayCached() throws FENFormatException, IllegalMoveException {
+        Board board = new Board();
+        board.setMoveCache(moveCache);
+        return replay(board);
+    }
+
+    private static Board replay(Board board) throws IllegalMoveException {
+        String[] moves = TestGames.OPERA_GAME_SQUARES;
+        for (int i = 0; i < moves.length; i += 2) {
+            board.move(moves[i], moves[i + 1]);
+        }
+        return board;
+    }
+}
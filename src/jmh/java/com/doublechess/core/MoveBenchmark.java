@@ -0,0 +1,51 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Single move in positions of different game stages. The move is taken back after each call,
+// so every measurement includes one unmakeMove as well.
+@State(Scope.Thread)
+public class MoveBenchmark {
+    @Param({"opening", "middlegame", "endgame"})
+    public String stage;
+
+    private Board board;
+    private String from;
+    private String to;
+
+    @Setup
+    public void setUp() throws FENFormatException {
+        switch (stage) {
+            case "opening":
+                board = new Board();
+                from = "e2";
+                to = "e4";
+                break;
+            case "middlegame":
+                board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+                from = "e2";
+                to = "a6";
+                break;
+            case "endgame":
+                board = new Board("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1");
+                from = "e2";
+                to = "e4";
+                break;
+            default:
+                throw new IllegalArgumentException(stage);
+        }
+    }
+
+    @Benchmark
+    public Board move() throws IllegalMoveException {
+        board.move(from, to);
+        board.unmakeMove();
+        return board;
+    }
+}
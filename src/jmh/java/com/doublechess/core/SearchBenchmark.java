@@ -0,0 +1,46 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Fixed depth search of a busy middlegame position, nodes per second are in the result
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"4", "6"})
+    public int depth;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    private Board board;
+    private Search search;
+    private ParallelSearch parallelSearch;
+
+    @Setup
+    public void setUp() throws FENFormatException {
+        board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        search = new Search();
+        parallelSearch = new ParallelSearch(threads, new TranspositionTable(1 << 20));
+    }
+
+    @TearDown
+    public void tearDown() {
+        parallelSearch.close();
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return search.search(board, depth);
+    }
+
+    // Table is kept between invocations, like between the moves of an analysed game
+    @Benchmark
+    public SearchResult parallelSearch() {
+        return parallelSearch.search(board, depth);
+    }
+}
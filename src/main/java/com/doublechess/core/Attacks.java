@@ -0,0 +1,143 @@
+package com.doublechess.core;
+
+import com.doublechess.core.piece.Piece;
+
+// Precomputed attack sets. Short range pieces are plain table lookups, sliding pieces use rays
+// cut at the first blocker found with a single bit scan per direction.
+final class Attacks {
+    // Ray directions, the first four go towards higher squares
+    private static final int NORTH = 0;
+    private static final int EAST = 1;
+    private static final int NORTH_EAST = 2;
+    private static final int NORTH_WEST = 3;
+    private static final int SOUTH = 4;
+    private static final int WEST = 5;
+    private static final int SOUTH_WEST = 6;
+    private static final int SOUTH_EAST = 7;
+    private static final int[][] DIRECTIONS = {
+            {1, 0}, {0, 1}, {1, 1}, {1, -1},
+            {-1, 0}, {0, -1}, {-1, -1}, {-1, 1}
+    };
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+    private static final long[][] RAYS = new long[8][64];
+    // Squares strictly between two aligned squares and the whole line through them, empty if not aligned
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        int[][] knightSteps = {{2, 1}, {2, -1}, {1, 2}, {1, -2}, {-2, 1}, {-2, -1}, {-1, 2}, {-1, -2}};
+        for (int square = 0; square < 64; square++) {
+            int rank = square / 8;
+            int file = square % 8;
+
+            for (int[] step : knightSteps) {
+                KNIGHT[square] |= bit(rank + step[0], file + step[1]);
+            }
+            for (int[] direction : DIRECTIONS) {
+                KING[square] |= bit(rank + direction[0], file + direction[1]);
+            }
+            PAWN[BitboardPosition.WHITE][square] = bit(rank + 1, file - 1) | bit(rank + 1, file + 1);
+            PAWN[BitboardPosition.BLACK][square] = bit(rank - 1, file - 1) | bit(rank - 1, file + 1);
+
+            for (int i = 0; i < DIRECTIONS.length; i++) {
+                for (int r = rank + DIRECTIONS[i][0], f = file + DIRECTIONS[i][1];
+                     r >= 0 && r < 8 && f >= 0 && f < 8; r += DIRECTIONS[i][0], f += DIRECTIONS[i][1]) {
+                    RAYS[i][square] |= 1L << (r * 8 + f);
+                }
+            }
+        }
+
+        for (int square = 0; square < 64; square++) {
+            for (int i = 0; i < DIRECTIONS.length; i++) {
+                // Opposite direction index differs in the third bit
+                long line = RAYS[i][square] | RAYS[i ^ 4][square] | 1L << square;
+                for (long ray = RAYS[i][square]; ray != 0; ray &= ray - 1) {
+                    int other = Long.numberOfTrailingZeros(ray);
+                    BETWEEN[square][other] = RAYS[i][square] & RAYS[i ^ 4][other];
+                    LINE[square][other] = line;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    static long king(int square) {
+        return KING[square];
+    }
+
+    // Squares attacked by a pawn of the given color standing on the square
+    static long pawn(int color, int square) {
+        return PAWN[color][square];
+    }
+
+    static long bishop(int square, long occupied) {
+        return positiveRay(NORTH_EAST, square, occupied) | positiveRay(NORTH_WEST, square, occupied) |
+                negativeRay(SOUTH_WEST, square, occupied) | negativeRay(SOUTH_EAST, square, occupied);
+    }
+
+    static long rook(int square, long occupied) {
+        return positiveRay(NORTH, square, occupied) | positiveRay(EAST, square, occupied) |
+                negativeRay(SOUTH, square, occupied) | negativeRay(WEST, square, occupied);
+    }
+
+    static long queen(int square, long occupied) {
+        return bishop(square, occupied) | rook(square, occupied);
+    }
+
+    // Attack set of any piece except pawns
+    static long piece(int type, int square, long occupied) {
+        switch (type) {
+            case Piece.KNIGHT:
+                return KNIGHT[square];
+            case Piece.BISHOP:
+                return bishop(square, occupied);
+            case Piece.ROOK:
+                return rook(square, occupied);
+            case Piece.QUEEN:
+                return queen(square, occupied);
+            case Piece.KING:
+                return KING[square];
+            default:
+                throw new IllegalArgumentException("Pawn attacks depend on color");
+        }
+    }
+
+    static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    private static long positiveRay(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+        if (blockers != 0) {
+            ray ^= RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+        }
+        return ray;
+    }
+
+    private static long negativeRay(int direction, int square, long occupied) {
+        long ray = RAYS[direction][square];
+        long blockers = ray & occupied;
+        if (blockers != 0) {
+            ray ^= RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+        }
+        return ray;
+    }
+
+    private static long bit(int rank, int file) {
+        return rank >= 0 && rank < 8 && file >= 0 && file < 8 ? 1L << (rank * 8 + file) : 0;
+    }
+}
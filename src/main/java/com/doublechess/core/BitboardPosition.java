@@ -0,0 +1,444 @@
+package com.doublechess.core;
+
+import com.doublechess.core.piece.Piece;
+
+import java.util.Arrays;
+
+// Pieces placement stored as occupancy bitboards per color and per piece type.
+// Squares are numbered the same way as everywhere else: a1 = 0, h1 = 7, h8 = 63.
+final class BitboardPosition {
+    static final int WHITE = 0;
+    static final int BLACK = 1;
+    static final int EMPTY = -1;
+
+    static final long FILE_A = 0x0101010101010101L;
+    static final long FILE_H = FILE_A << 7;
+    static final long RANK_1 = 0xFFL;
+    static final long RANK_2 = RANK_1 << 8;
+    static final long RANK_7 = RANK_1 << 48;
+    static final long RANK_8 = RANK_1 << 56;
+    static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+    static final long DARK_SQUARES = ~LIGHT_SQUARES;
+
+    // Flags returned by moveFlags
+    static final int CHECK = 1;
+    static final int LAST_MOVE = 2;
+
+    // Castling rights bits
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+
+    private static final int[] NO_UNDO = new int[0];
+    private static final long[] NO_UNDO_HASHES = new long[0];
+    private static final char[] PIECE_CHARS = {'p', 'n', 'b', 'r', 'q', 'k'};
+    // Castling rights which survive a move from or to the square
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASKS[7] &= ~WHITE_KINGSIDE;
+        CASTLING_MASKS[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASKS[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[63] &= ~BLACK_KINGSIDE;
+        CASTLING_MASKS[56] &= ~BLACK_QUEENSIDE;
+    }
+
+    // Occupancy by color (index 0 is white) and by piece type (indexed by Piece type codes)
+    final long[] colors = new long[2];
+    final long[] types = new long[6];
+    long occupied;
+    // Piece code (type | color << 3) of every square, used to answer "what stands here" without bitboard scans
+    private final byte[] squares = new byte[64];
+    int sideToMove;
+    int castling;
+    // Square behind a pawn which has just made a double step, -1 if there is no such pawn
+    int enpassantSquare;
+    // Zobrist hash of everything above, updated incrementally
+    long hash;
+    // Counts of pieces by kind, see MaterialKey
+    long materialKey;
+    // Evaluation terms from white's point of view and the game phase, updated with every piece put or removed
+    private EvaluationWeights weights = EvaluationWeights.DEFAULT;
+    private int middlegame;
+    private int endgame;
+    private int phase;
+
+    // Undo information of the moves made: captured piece code, castling rights, enpassant square and hash
+    private int[] undoStack;
+    private long[] hashStack;
+    private int undoSize;
+    private MoveGenerator generator;
+
+    BitboardPosition() {
+        undoStack = new int[256];
+        hashStack = new long[256];
+        clear();
+    }
+
+    private BitboardPosition(BitboardPosition other, int[] undoStack, long[] hashStack) {
+        this.undoStack = undoStack;
+        this.hashStack = hashStack;
+        copyFrom(other);
+    }
+
+    // Copy of the current position without moves history
+    BitboardPosition copy() {
+        return new BitboardPosition(this, new int[16], new long[16]);
+    }
+
+    // Lean copy for immutable views, moves can't be made on it
+    BitboardPosition readOnlyCopy() {
+        return new BitboardPosition(this, NO_UNDO, NO_UNDO_HASHES);
+    }
+
+    // Makes this position equal to the other one, moves history is dropped
+    void copyFrom(BitboardPosition other) {
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.types, 0, types, 0, types.length);
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        enpassantSquare = other.enpassantSquare;
+        hash = other.hash;
+        materialKey = other.materialKey;
+        weights = other.weights;
+        middlegame = other.middlegame;
+        endgame = other.endgame;
+        phase = other.phase;
+        undoSize = 0;
+    }
+
+    // Same pieces placement, player to move, castling rights and enpassant square
+    boolean isSamePosition(BitboardPosition other) {
+        return Arrays.equals(colors, other.colors) && Arrays.equals(types, other.types) &&
+                sideToMove == other.sideToMove && castling == other.castling && enpassantSquare == other.enpassantSquare;
+    }
+
+    MoveGenerator generator() {
+        if (generator == null) {
+            generator = new MoveGenerator(this);
+        }
+        return generator;
+    }
+
+    void clear() {
+        colors[WHITE] = colors[BLACK] = 0;
+        for (int i = 0; i < types.length; i++) {
+            types[i] = 0;
+        }
+        occupied = 0;
+        for (int i = 0; i < 64; i++) {
+            squares[i] = EMPTY;
+        }
+        sideToMove = WHITE;
+        castling = 0;
+        enpassantSquare = -1;
+        hash = 0;
+        materialKey = 0;
+        middlegame = endgame = phase = 0;
+        undoSize = 0;
+    }
+
+    void put(int color, int type, int square) {
+        long bit = 1L << square;
+        colors[color] |= bit;
+        types[type] |= bit;
+        occupied |= bit;
+        int code = type | color << 3;
+        squares[square] = (byte) code;
+        hash ^= Zobrist.piece(code, square);
+        long unit = MaterialKey.UNITS[code << 6 | square];
+        if (!MaterialKey.isSaturated(materialKey, unit)) {
+            materialKey += unit;
+        }
+        middlegame += weights.middlegame[code << 6 | square];
+        endgame += weights.endgame[code << 6 | square];
+        phase += weights.phase[code];
+    }
+
+    void remove(int square) {
+        int code = squares[square];
+        if (code == EMPTY) {
+            return;
+        }
+
+        long bit = ~(1L << square);
+        colors[code >>> 3] &= bit;
+        types[code & 7] &= bit;
+        occupied &= bit;
+        squares[square] = EMPTY;
+        hash ^= Zobrist.piece(code, square);
+        long unit = MaterialKey.UNITS[code << 6 | square];
+        if (!MaterialKey.isSaturated(materialKey, unit) || materialCount(code, square) < 15) {
+            materialKey -= unit;
+        }
+        middlegame -= weights.middlegame[code << 6 | square];
+        endgame -= weights.endgame[code << 6 | square];
+        phase -= weights.phase[code];
+    }
+
+    // Pieces left of the kind counted by the material key field of the piece on the square
+    private int materialCount(int code, int square) {
+        long pieces = colors[code >>> 3] & types[code & 7];
+        if ((code & 7) == Piece.BISHOP) {
+            pieces &= (LIGHT_SQUARES >>> square & 1) != 0 ? LIGHT_SQUARES : DARK_SQUARES;
+        }
+        return Long.bitCount(pieces);
+    }
+
+    void relocate(int from, int to) {
+        int code = squares[from];
+        remove(from);
+        put(code >>> 3, code & 7, to);
+    }
+
+    boolean isEmpty(int square) {
+        return (occupied & 1L << square) == 0;
+    }
+
+    int typeAt(int square) {
+        int code = squares[square];
+        return code == EMPTY ? EMPTY : code & 7;
+    }
+
+    int colorAt(int square) {
+        int code = squares[square];
+        return code == EMPTY ? EMPTY : code >>> 3;
+    }
+
+    long pieces(int color, int type) {
+        return colors[color] & types[type];
+    }
+
+    int count(int color, int type) {
+        return Long.bitCount(colors[color] & types[type]);
+    }
+
+    // Pieces of the given color attacking the square, occupancy may differ from the actual one
+    long attackersTo(int square, int color, long occupied) {
+        long queens = types[Piece.QUEEN];
+        return colors[color] & (Attacks.pawn(color ^ 1, square) & types[Piece.PAWN] |
+                Attacks.knight(square) & types[Piece.KNIGHT] |
+                Attacks.bishop(square, occupied) & (types[Piece.BISHOP] | queens) |
+                Attacks.rook(square, occupied) & (types[Piece.ROOK] | queens) |
+                Attacks.king(square) & types[Piece.KING]);
+    }
+
+    boolean isAttacked(int square, int color) {
+        return attackersTo(square, color, occupied) != 0;
+    }
+
+    int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(colors[color] & types[Piece.KING]);
+    }
+
+    // Whether the king of the side to move is in check
+    boolean isInCheck() {
+        return isAttacked(kingSquare(sideToMove), sideToMove ^ 1);
+    }
+
+    void make(int move) {
+        int from = MoveCode.from(move);
+        int to = MoveCode.to(move);
+        int color = sideToMove;
+        int capturedSquare = MoveCode.isEnpassant(move) ? (from & ~7) | (to & 7) : to;
+
+        if (undoSize == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoSize * 2);
+            hashStack = Arrays.copyOf(hashStack, undoSize * 2);
+        }
+        hashStack[undoSize] = hash;
+        undoStack[undoSize++] = (squares[capturedSquare] & 15) | castling << 4 | (enpassantSquare + 1) << 8;
+        hash ^= enpassantKey() ^ Zobrist.castling(castling);
+
+        remove(capturedSquare);
+        relocate(from, to);
+
+        if (MoveCode.isPromotion(move)) {
+            remove(to);
+            put(color, MoveCode.promotionType(move), to);
+        } else if (MoveCode.isCastling(move)) {
+            if (to > from) {
+                relocate(from + 3, from + 1);
+            } else {
+                relocate(from - 4, from - 1);
+            }
+        }
+
+        castling &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        enpassantSquare = MoveCode.isDoubleStep(move) ? (from + to) / 2 : -1;
+        sideToMove = color ^ 1;
+        hash ^= enpassantKey() ^ Zobrist.castling(castling) ^ Zobrist.blackToMove();
+    }
+
+    void unmake(int move) {
+        int from = MoveCode.from(move);
+        int to = MoveCode.to(move);
+        int color = sideToMove ^ 1;
+        int undo = undoStack[--undoSize];
+
+        if (MoveCode.isPromotion(move)) {
+            remove(to);
+            put(color, Piece.PAWN, to);
+        } else if (MoveCode.isCastling(move)) {
+            if (to > from) {
+                relocate(from + 1, from + 3);
+            } else {
+                relocate(from - 1, from - 4);
+            }
+        }
+        relocate(to, from);
+
+        int capturedCode = undo & 15;
+        if (capturedCode != 15) {
+            int capturedSquare = MoveCode.isEnpassant(move) ? (from & ~7) | (to & 7) : to;
+            put(capturedCode >>> 3, capturedCode & 7, capturedSquare);
+        }
+
+        castling = undo >>> 4 & 15;
+        enpassantSquare = (undo >>> 8) - 1;
+        sideToMove = color;
+        hash = hashStack[undoSize];
+    }
+
+    EvaluationWeights getWeights() {
+        return weights;
+    }
+
+    // Evaluation terms are summed up again with the new weights
+    void setWeights(EvaluationWeights weights) {
+        this.weights = weights;
+        middlegame = endgame = phase = 0;
+        for (long bitboard = occupied; bitboard != 0; bitboard &= bitboard - 1) {
+            int square = Long.numberOfTrailingZeros(bitboard);
+            int code = squares[square];
+            middlegame += weights.middlegame[code << 6 | square];
+            endgame += weights.endgame[code << 6 | square];
+            phase += weights.phase[code];
+        }
+    }
+
+    // Middlegame and endgame terms blended by the phase, from the point of view of the player to move
+    int evaluate() {
+        int maxPhase = weights.maxPhase;
+        int score = maxPhase == 0 ? middlegame :
+                (middlegame * Math.min(phase, maxPhase) + endgame * Math.max(maxPhase - phase, 0)) / maxPhase;
+        return sideToMove == WHITE ? score : -score;
+    }
+
+    // Full hash calculation, used when the position is set up rather than reached by moves
+    long computeHash() {
+        long result = enpassantKey() ^ Zobrist.castling(castling);
+        if (sideToMove == BLACK) {
+            result ^= Zobrist.blackToMove();
+        }
+        for (long bitboard = occupied; bitboard != 0; bitboard &= bitboard - 1) {
+            int square = Long.numberOfTrailingZeros(bitboard);
+            result ^= Zobrist.piece(squares[square], square);
+        }
+        return result;
+    }
+
+    // Enpassant square is a part of the hash only when a pawn of the side to move can go there,
+    // otherwise equal positions would differ just because of the last double step
+    private long enpassantKey() {
+        if (enpassantSquare == -1 ||
+                (Attacks.pawn(sideToMove ^ 1, enpassantSquare) & pieces(sideToMove, Piece.PAWN)) == 0) {
+            return 0;
+        }
+        return Zobrist.enpassant(enpassantSquare);
+    }
+
+    // Whether the legal move gives check and whether it leaves the opponent without legal moves
+    int moveFlags(int move) {
+        make(move);
+        int flags = isInCheck() ? CHECK : 0;
+        if (!generator().hasLegalMove()) {
+            flags |= LAST_MOVE;
+        }
+        unmake(move);
+        return flags;
+    }
+
+    // FEN letter of the piece on the square, uppercase for white
+    char charAt(int square) {
+        int code = squares[square];
+        char c = PIECE_CHARS[code & 7];
+        return code >>> 3 == WHITE ? Character.toUpperCase(c) : c;
+    }
+
+    static int colorIndex(boolean white) {
+        return white ? WHITE : BLACK;
+    }
+
+    static int colorIndex(Piece piece) {
+        return piece.isWhite() ? WHITE : BLACK;
+    }
+
+    // Enpassant target is passed separately as FEN shows it only if the capture is legal
+    String toFEN(int enpassant, int halfMoveCounter, int fullMoveCounter) {
+        StringBuilder stringBuilder = new StringBuilder(90);
+
+        // Pieces positions
+        int square = 56;
+        int blankCounter = 0;
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j <= 8; j++) {
+                boolean empty = j == 8 || isEmpty(square);
+
+                if (j == 8 || !empty) {
+                    if (blankCounter > 0) {
+                        stringBuilder.append(blankCounter);
+                    }
+                    blankCounter = 0;
+                }
+
+                if (j < 8) {
+                    if (empty) {
+                        blankCounter++;
+                    } else {
+                        stringBuilder.append(charAt(square));
+                    }
+
+                    square++;
+                } else if (i < 7) {
+                    stringBuilder.append('/');
+                }
+            }
+            square -= 16;
+        }
+
+        // Move order
+        stringBuilder.append(' ').append(sideToMove == WHITE ? 'w' : 'b').append(' ');
+
+        // Castling
+        if ((castling & WHITE_KINGSIDE) != 0) {
+            stringBuilder.append('K');
+        }
+        if ((castling & WHITE_QUEENSIDE) != 0) {
+            stringBuilder.append('Q');
+        }
+        if ((castling & BLACK_KINGSIDE) != 0) {
+            stringBuilder.append('k');
+        }
+        if ((castling & BLACK_QUEENSIDE) != 0) {
+            stringBuilder.append('q');
+        }
+        if (castling == 0) {
+            stringBuilder.append('-');
+        }
+        stringBuilder.append(' ');
+
+        // Enpassant
+        stringBuilder.append(enpassant != -1 ? CoreUtils.positionToAlgebraic(enpassant) : "-").append(' ');
+
+        // Move counters
+        stringBuilder.append(halfMoveCounter).append(' ').append(fullMoveCounter);
+
+        return stringBuilder.toString();
+    }
+}
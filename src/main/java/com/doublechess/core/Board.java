@@ -4,22 +4,40 @@ import com.doublechess.core.exception.FENFormatException;
 import com.doublechess.core.exception.IllegalMoveException;
 import com.doublechess.core.piece.*;
 
-import java.time.Instant;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Stack;
 
-import static com.doublechess.core.CoreUtils.positionToFile;
-import static com.doublechess.core.CoreUtils.positionToRank;
-
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class Board {
-    // Pieces storage
+    private static final int FEN_CACHE_SIZE = 8;
+    private static final int INSUFFICIENT_WHITE = 1 << 7;
+    private static final int INSUFFICIENT_BLACK = 1 << 8;
+    static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    // Legal moves of the start position are the same for every game, so they are generated once.
+    // These have to be the last static fields, as they are computed by creating a board.
+    private static final BitboardPosition START_POSITION;
+    private static final int[] START_POSITION_MOVES;
+
+    static {
+        try {
+            Board board = new Board();
+            START_POSITION = board.state.copy();
+            START_POSITION_MOVES = Arrays.copyOf(board.legalMoves, board.legalMovesCount);
+        } catch (FENFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Pieces storage, bitboards are used for move generation and the array keeps piece objects for callers
+    private BitboardPosition state = new BitboardPosition();
     private Piece[] pieces = new Piece[64];
-    private King[] kings = new King[2];
-    // Move indicator
-    private boolean whiteToMove;
+    private MoveGenerator generator = state.generator();
+    private FENParser fenParser = new FENParser();
     // Time fields
     private long whiteTimeInitial;
     private long blackTimeInitial;
@@ -28,34 +46,62 @@ public class Board {
     private long increment;
     private long startTime;
     private long lastMoveTime;
+    // Clocks run by the time source, the clock service also flags the player to move on time
+    private TimeSource timeSource = TimeSource.SYSTEM;
+    private ClockService clock;
+    private ClockService.Timer clockTimer;
+    private Runnable timeoutAction;
     private int halfMoveCounter = 0;
     private int fullMoveCounter = 1;
-    // Current possible moves storage
+    // Current possible moves storage. Legal moves are kept as codes in a reusable buffer,
+    // Move objects are built only when asked for and dropped on the next position change.
+    private int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+    private int legalMovesCount;
     private Move[] possibleMoves = new Move[64 * 64];
-    private ArrayList<Move> possibleMovesList = new ArrayList<>();
-    private boolean[] kingsideCastlingPossible = new boolean[2];
-    private boolean[] queensideCastlingPossible = new boolean[2];
-    private int initEnpassantTo = -1;
+    private ArrayList<Move> possibleMovesList;
+    // Move built alone while the list isn't, its flags are worked out on demand as well
+    private Move singleMove;
+    // Legal moves chained by piece type and destination for SAN lookups, built when first needed in a position
+    private int[] sanIndexHeads = new int[6 * 64];
+    private int[] sanIndexNext = new int[MoveGenerator.MAX_MOVES];
+    private boolean sanIndexBuilt;
     private int enpassantTo = -1;
-    // Piece counters
+    // Whether a player can't mate by the material left
     private boolean[] insufficient = new boolean[2];
-    private int[] queenCount = new int[2];
-    private int[] rookCount = new int[2];
-    private int[] bishopCount = new int[2];
-    private int[] knightCount = new int[2];
-    private int[] pawnCount = new int[2];
 
     // Moves and position history
     private Stack<Move> movesHistory = new Stack<>();
-    private Stack<String> fenHistory = new Stack<>();
+    // Positions history is kept compact: the initial position plus hash, move made and counters
+    // of every ply, the last ply is the current position. FEN strings are built only when asked.
+    // Ply info keeps half-move counter, insufficient material indicators and enpassant square.
+    private BitboardPosition initialState;
+    private int initialFullMoveCounter;
+    private long[] hashHistory = new long[256];
+    private int[] moveHistory = new int[256];
+    private int[] plyInfoHistory = new int[256];
+    // Clocks after every ply, so taking back a move gives the time back
+    private long[] whiteTimeHistory = new long[256];
+    private long[] blackTimeHistory = new long[256];
+    private long[] lastMoveTimeHistory = new long[256];
+    private int historySize;
+    // Most recently built FEN strings by ply
+    private String[] fenCache = new String[FEN_CACHE_SIZE];
+    private int[] fenCachePlies = new int[FEN_CACHE_SIZE];
     private GameResult gameResult;
+    // Last published immutable view for other threads, null unless publishing is on
+    private volatile Position snapshot;
+    private boolean publishingSnapshots;
+    private PGNWriter pgnWriter;
+    private MoveCache moveCache;
+    // Cache entry of the current position, built moves share their flags and notation through it
+    private MoveCache.Entry movesEntry;
 
     public Board() throws FENFormatException {
         this(0, 0, 0);
     }
 
     public Board(long whiteTime, long blackTime, long increment) throws FENFormatException {
-        this("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", whiteTime, blackTime, increment);
+        this(START_FEN, whiteTime, blackTime, increment);
     }
 
     public Board(String fen) throws FENFormatException {
@@ -63,23 +109,93 @@ public class Board {
     }
 
     public Board(String fen, long whiteTime, long blackTime, long increment) throws FENFormatException {
+        reset(fen, whiteTime, blackTime, increment);
+    }
+
+    // Reinitialises the board in place for a new game, so the instance can be reused instead of creating a new one.
+    // The board isn't usable after a failed reset until it's reset successfully.
+    public void reset(String fen, long whiteTime, long blackTime, long increment) throws FENFormatException {
+        FENError error = tryReset(fen, whiteTime, blackTime, increment);
+        if (error != FENError.NONE) {
+            throw new FENFormatException(error.getMessage());
+        }
+    }
+
+    // Same as reset, but the error is returned instead of thrown, which is cheaper for bulk FEN processing
+    public FENError tryReset(CharSequence fen, long whiteTime, long blackTime, long increment) {
+        clearGame(whiteTime, blackTime, increment);
+        return startGame(fenParser.parse(fen, state));
+    }
+
+    // FEN is read from ASCII bytes between position and limit of the buffer, the buffer itself isn't changed
+    public FENError tryReset(ByteBuffer fen, long whiteTime, long blackTime, long increment) {
+        clearGame(whiteTime, blackTime, increment);
+        return startGame(fenParser.parse(fen, state));
+    }
+
+    private void clearGame(long whiteTime, long blackTime, long increment) {
         this.whiteTimeInitial = whiteTime;
         this.blackTimeInitial = blackTime;
         this.whiteTime = whiteTime;
         this.blackTime = blackTime;
         this.increment = increment;
+        this.startTime = 0;
+        this.lastMoveTime = 0;
+        if (clockTimer != null) {
+            clockTimer.cancel();
+        }
         this.gameResult = GameResult.NOT_FINISHED;
 
-        parseFEN(fen);
+        // Moves of the previous game may still be held by the caller, the new position is parsed into the state
+        detachPossibleMoves();
+        clearPossibleMoves();
+        legalMovesCount = 0;
+        Arrays.fill(pieces, null);
+        Arrays.fill(insufficient, false);
+        movesHistory.clear();
+        historySize = 0;
+        Arrays.fill(fenCache, null);
+        pgnWriter = null;
+    }
 
-        updatePossibleMoves();
+    private FENError startGame(FENError error) {
+        if (error != FENError.NONE) {
+            return error;
+        }
+
+        halfMoveCounter = fenParser.halfMoveCounter;
+        fullMoveCounter = fenParser.fullMoveCounter;
+        int initEnpassantTo = state.enpassantSquare;
+
+        if (START_POSITION_MOVES != null && state.isSamePosition(START_POSITION)) {
+            System.arraycopy(START_POSITION_MOVES, 0, legalMoves, 0, START_POSITION_MOVES.length);
+            legalMovesCount = START_POSITION_MOVES.length;
+            enpassantTo = -1;
+        } else {
+            updatePossibleMoves();
+        }
 
         // Late is better than never, check if initially specified enpassant was correct
         if (initEnpassantTo != enpassantTo) {
-            throw new FENFormatException("Specified enpassant capture is impossible");
+            return FENError.IMPOSSIBLE_ENPASSANT;
         }
 
-        fenHistory.add(buildFEN());
+        // Piece objects for callers
+        for (long occupied = state.occupied; occupied != 0; occupied &= occupied - 1) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            createPiece(state.typeAt(square), state.colorAt(square) == BitboardPosition.WHITE, square);
+        }
+        updateInsufficientIndicators();
+
+        if (initialState == null) {
+            initialState = state.copy();
+        } else {
+            initialState.copyFrom(state);
+        }
+        initialFullMoveCounter = fullMoveCounter;
+        addHistory(0);
+        publishSnapshot();
+        return FENError.NONE;
     }
 
     public Piece getPiece(int position) {
@@ -87,11 +203,11 @@ public class Board {
     }
 
     public boolean hasPiece(int position) {
-        return pieces[position] != null;
+        return !state.isEmpty(position);
     }
 
     public boolean isWhiteToMove() {
-        return whiteToMove;
+        return state.sideToMove == BitboardPosition.WHITE;
     }
 
     public long getWhiteTimeInitial() {
@@ -118,8 +234,76 @@ public class Board {
         return startTime;
     }
 
+    // Time is in milliseconds of the time source, which are aligned to the epoch by default
     public void setStartTime(long startTime) {
         this.startTime = startTime;
+        updateClockTimer();
+    }
+
+    // Board takes the time from the clock service, which calls the timeout action on its own thread when
+    // the player to move runs out of time. The action should get checkTime called on the board's thread.
+    // The clock is kept over resets, null detaches the board.
+    public void setClock(ClockService clock, Runnable timeoutAction) {
+        if (clockTimer != null) {
+            clockTimer.cancel();
+            clockTimer = null;
+        }
+        this.clock = clock;
+        this.timeoutAction = timeoutAction;
+        timeSource = clock != null ? clock.getTimeSource() : TimeSource.SYSTEM;
+        updateClockTimer();
+    }
+
+    public ClockService getClock() {
+        return clock;
+    }
+
+    // Flags the player to move if the time is over, returns true if the game is finished by this
+    public boolean checkTime() {
+        if (startTime <= 0 || gameResult != GameResult.NOT_FINISHED) {
+            return false;
+        }
+
+        long now = timeSource.millis();
+        if (now < getDeadline()) {
+            // Early call, the timer is still valid
+            updateClockTimer();
+            return false;
+        }
+
+        long elapsed = now - (lastMoveTime > 0 ? lastMoveTime : startTime) - increment;
+        if (isWhiteToMove()) {
+            whiteTime -= elapsed;
+            gameResult = insufficient[1] ? GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL : GameResult.BLACK_WON_ON_TIME;
+        } else {
+            blackTime -= elapsed;
+            gameResult = insufficient[0] ? GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL : GameResult.WHITE_WON_ON_TIME;
+        }
+        lastMoveTime = now;
+        publishSnapshot();
+
+        if (pgnWriter != null) {
+            pgnWriter.finish(gameResult);
+        }
+        return true;
+    }
+
+    // Time the player to move runs out of time at, the same way as it's counted on a move
+    long getDeadline() {
+        return (lastMoveTime > 0 ? lastMoveTime : startTime) + increment +
+                (isWhiteToMove() ? whiteTime : blackTime) + 1;
+    }
+
+    private void updateClockTimer() {
+        if (clock == null || timeoutAction == null || startTime <= 0 || gameResult != GameResult.NOT_FINISHED) {
+            if (clockTimer != null) {
+                clockTimer.cancel();
+            }
+        } else if (clockTimer == null) {
+            clockTimer = clock.schedule(getDeadline(), timeoutAction);
+        } else {
+            clock.reschedule(clockTimer, getDeadline());
+        }
     }
 
     public long getLastMoveTime() {
@@ -135,19 +319,21 @@ public class Board {
     }
 
     public Move getPossibleMove(int from, int to) {
+        buildPossibleMoves();
         return possibleMoves[from * 64 + to];
     }
 
     public Move getPossibleMove(String from, String to) {
-        return possibleMoves[CoreUtils.algebraicToPosition(from) * 64 + CoreUtils.algebraicToPosition(to)];
+        return getPossibleMove(CoreUtils.algebraicToPosition(from), CoreUtils.algebraicToPosition(to));
     }
 
     public List<Move> getPossibleMoves() {
+        buildPossibleMoves();
         return possibleMovesList;
     }
 
     public String getFEN() {
-        return !fenHistory.empty() ? fenHistory.peek() : null;
+        return getFEN(historySize - 1);
     }
 
     public Move getLastMove() {
@@ -155,6 +341,16 @@ public class Board {
     }
 
     public List<String> getFENHistory() {
+        // Replay the moves once and build all the strings on the way
+        ArrayList<String> fenHistory = new ArrayList<>(historySize);
+        BitboardPosition position = initialState.copy();
+        for (int ply = 0; ply < historySize; ply++) {
+            if (ply > 0) {
+                position.make(moveHistory[ply]);
+            }
+            String fen = getCachedFEN(ply);
+            fenHistory.add(fen != null ? fen : cacheFEN(ply, buildFEN(position, ply)));
+        }
         return fenHistory;
     }
 
@@ -162,31 +358,161 @@ public class Board {
         return movesHistory;
     }
 
+    // Zobrist hash of the current position, equal positions (pieces, player to move,
+    // castling and enpassant possibilities) have equal hashes
+    public long getPositionHash() {
+        return state.hash;
+    }
+
+    // How many times the current position has occurred since the last capture or pawn move
+    public int getRepetitionCount() {
+        long hash = state.hash;
+        int count = 1;
+        // Only positions with the same player to move can be equal
+        int last = Math.max(0, historySize - 1 - halfMoveCounter);
+        for (int i = historySize - 3; i >= last; i -= 2) {
+            if (hashHistory[i] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Copy of the current position for tools working on the bitboards directly
+    BitboardPosition copyState() {
+        return state.copy();
+    }
+
     public GameResult getGameResult() {
         return gameResult;
     }
 
+    // Game record goes to the writer as moves are played with move() or makeMove(), the result when the game
+    // ends. Moves played before the writer is attached are written at once. Moves can't be taken back while
+    // a writer is attached.
+    public void setPGNWriter(PGNWriter pgnWriter) {
+        this.pgnWriter = pgnWriter;
+        if (pgnWriter == null) {
+            return;
+        }
+
+        pgnWriter.start(this);
+        int moveNumber = initialFullMoveCounter;
+        boolean white = initialState.sideToMove == BitboardPosition.WHITE;
+        for (Move move : movesHistory) {
+            pgnWriter.appendMove(moveNumber, white, move.getAlgebraic());
+            if (!white) {
+                moveNumber++;
+            }
+            white = !white;
+        }
+        if (gameResult != GameResult.NOT_FINISHED) {
+            pgnWriter.finish(gameResult);
+        }
+    }
+
+    public PGNWriter getPGNWriter() {
+        return pgnWriter;
+    }
+
+    // Shared cache the legal moves are taken from instead of generating them, it's kept over resets
+    public void setMoveCache(MoveCache moveCache) {
+        this.moveCache = moveCache;
+    }
+
+    public MoveCache getMoveCache() {
+        return moveCache;
+    }
+
+    // Counts of pieces by kind, see MaterialKey for the layout and lookups on it
+    public long getMaterialKey() {
+        return state.materialKey;
+    }
+
+    // Static evaluation in centipawns from the point of view of the player to move. Its terms are kept
+    // up to date as moves are made and taken back, so it costs next to nothing.
+    public int evaluate() {
+        return state.evaluate();
+    }
+
+    // Weights are kept over resets
+    public void setEvaluationWeights(EvaluationWeights weights) {
+        state.setWeights(weights);
+    }
+
+    public EvaluationWeights getEvaluationWeights() {
+        return state.getWeights();
+    }
+
+    // Hashes of all the game positions, the last one is the current position
+    long[] getHashHistory() {
+        return Arrays.copyOf(hashHistory, historySize);
+    }
+
+    String getInitialFEN() {
+        return getFEN(0);
+    }
+
+    // Immutable view of the position after the last move. With publishing on it's the last published one and
+    // can be read from any thread while the game goes on, otherwise it's built on the calling thread, which
+    // then has to be the one using the board.
+    public Position snapshot() {
+        Position result = snapshot;
+        return result != null ? result : createSnapshot();
+    }
+
+    // Publishing costs a position copy on every change, so it's off unless other threads read snapshots.
+    // The setting is kept over resets.
+    public void setPublishingSnapshots(boolean publishingSnapshots) {
+        this.publishingSnapshots = publishingSnapshots;
+        snapshot = publishingSnapshots ? createSnapshot() : null;
+    }
+
+    public boolean isPublishingSnapshots() {
+        return publishingSnapshots;
+    }
+
     public void move(int from, int to, PromotionPiece promotionPiece) throws IllegalMoveException {
         if (gameResult != GameResult.NOT_FINISHED) {
             throw new IllegalMoveException("The game is finished");
         }
 
-        Move move = possibleMoves[from * 64 + to];
+        Move move = findPossibleMove(from, to, promotionPiece.ordinal());
 
         if (move == null) {
             throw new IllegalMoveException();
         }
 
-        // Choose promotion move
-        if (move.getPromotionMoves() != null) {
-            move = move.getPromotionMoves()[promotionPiece.ordinal()];
+        playClockedMove(move);
+    }
+
+    // Move written in SAN, like "Nbd7", "exd8=Q+" or "O-O"
+    public void move(String san) throws IllegalMoveException {
+        if (gameResult != GameResult.NOT_FINISHED) {
+            throw new IllegalMoveException("The game is finished");
+        }
+
+        playClockedMove(parseSan(san));
+    }
+
+    // Legal move written in SAN. Departure coordinates are required by the same rules the moves are written with,
+    // more of them than needed are accepted as well. Check, mate and annotation signs are ignored.
+    public Move parseSan(String san) throws IllegalMoveException {
+        int code = findSanMove(san);
+        if (code == -2) {
+            throw new IllegalMoveException("Ambiguous move " + san);
+        } else if (code == -1) {
+            throw new IllegalMoveException("Illegal move " + san);
         }
+        return possibleMove(code);
+    }
 
+    private void playClockedMove(Move move) {
         // Time management
         if (startTime > 0) {
-            long now = Instant.now().toEpochMilli();
+            long now = timeSource.millis();
             long elapsed = now - (lastMoveTime > 0 ? lastMoveTime : startTime) - increment;
-            if (whiteToMove) {
+            if (isWhiteToMove()) {
                 whiteTime -= elapsed;
             } else {
                 blackTime -= elapsed;
@@ -194,35 +520,115 @@ public class Board {
             lastMoveTime = now;
         }
 
+        playMove(move);
+
+        // Running out of time beats any other result
+        boolean whiteToMove = isWhiteToMove();
+        if (whiteToMove && blackTime < 0) {
+            gameResult = insufficient[0] ? GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL : GameResult.WHITE_WON_ON_TIME;
+        } else if (!whiteToMove && whiteTime < 0) {
+            gameResult = insufficient[1] ? GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL : GameResult.BLACK_WON_ON_TIME;
+        }
+
+        publishSnapshot();
+        updateClockTimer();
+        writePGNMove(move);
+    }
+
+    // Plays the move without touching the clocks, it can be taken back with unmakeMove
+    public void makeMove(Move move) throws IllegalMoveException {
+        if (gameResult != GameResult.NOT_FINISHED) {
+            throw new IllegalMoveException("The game is finished");
+        }
+
+        // Use own instance of the move, the given one may come from another board
+        Move possibleMove = findPossibleMove(move.getFrom(), move.getTo(), move.getPromotionPieceClass() != null ?
+                promotionPieceIndex(CoreUtils.pieceClassToType(move.getPromotionPieceClass())) : -1);
+        if (possibleMove == null) {
+            throw new IllegalMoveException();
+        }
+
+        playMove(possibleMove);
+        publishSnapshot();
+        updateClockTimer();
+        writePGNMove(possibleMove);
+    }
+
+    private void writePGNMove(Move move) {
+        if (pgnWriter == null) {
+            return;
+        }
+
+        boolean white = !isWhiteToMove();
+        pgnWriter.appendMove(white ? fullMoveCounter : fullMoveCounter - 1, white, move.getAlgebraic());
+        if (gameResult != GameResult.NOT_FINISHED) {
+            pgnWriter.finish(gameResult);
+        }
+    }
+
+    // Takes back the last move, all the position state and the clocks are restored from the history.
+    // Moves can't be taken back while a PGN writer is attached, they are already written out.
+    public void unmakeMove() throws IllegalMoveException {
+        if (movesHistory.empty()) {
+            throw new IllegalMoveException("There is no move to unmake");
+        }
+        if (pgnWriter != null) {
+            throw new IllegalMoveException("Moves can't be taken back while a PGN writer is attached");
+        }
+
+        Move move = movesHistory.pop();
+        historySize--;
+        unmoveInternal(move, moveHistory[historySize]);
+
+        int plyInfo = plyInfoHistory[historySize - 1];
+        halfMoveCounter = plyInfo >>> 9;
+        insufficient[0] = (plyInfo & INSUFFICIENT_WHITE) != 0;
+        insufficient[1] = (plyInfo & INSUFFICIENT_BLACK) != 0;
+        whiteTime = whiteTimeHistory[historySize - 1];
+        blackTime = blackTimeHistory[historySize - 1];
+        lastMoveTime = lastMoveTimeHistory[historySize - 1];
+        if (!isWhiteToMove()) {
+            fullMoveCounter--;
+        }
+        // No move could be made from a finished game
+        gameResult = GameResult.NOT_FINISHED;
+
+        updatePossibleMoves();
+        publishSnapshot();
+        updateClockTimer();
+    }
+
+    private void playMove(Move move) {
         if (move.getCapturedPiece() != null || move.getPiece() instanceof Pawn) {
             halfMoveCounter = 0;
         } else {
             halfMoveCounter++;
         }
 
-        if (!whiteToMove) {
+        if (!isWhiteToMove()) {
             fullMoveCounter++;
         }
 
-        // Perform actual move
-        moveInternal(move, false);
-
-        // Toggle player-to-move indicator
-        whiteToMove = !whiteToMove;
+        // Perform actual move, it also toggles player-to-move indicator. Flags of the move are set below,
+        // so it doesn't need the position it was made in.
+        int code = toMoveCode(move);
+        if (move == singleMove) {
+            move.setOrigin(null, 0);
+        }
+        moveInternal(move);
 
         // Update possible moves list and history
         movesHistory.add(move);
         updatePossibleMoves();
-        fenHistory.add(buildFEN());
+        addHistory(code);
+
+        // Flags of the move made are known for free now
+        move.setFlags(state.isInCheck(), legalMovesCount == 0);
 
         // Possibly set a game result
-        if (whiteToMove && blackTime < 0) {
-            gameResult = insufficient[0] ? GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL : GameResult.WHITE_WON_ON_TIME;
-        } else if (!whiteToMove && whiteTime < 0) {
-            gameResult = insufficient[1] ? GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL : GameResult.BLACK_WON_ON_TIME;
-        } else if (move.isLastMove()) {
+        if (move.isLastMove()) {
             if (move.isCheck()) {
-                gameResult = whiteToMove ? GameResult.BLACK_WON_BY_CHECKMATE : GameResult.WHITE_WON_BY_CHECKMATE;
+                gameResult = isWhiteToMove() ? GameResult.BLACK_WON_BY_CHECKMATE : GameResult.WHITE_WON_BY_CHECKMATE;
             } else {
                 gameResult = GameResult.DRAW_BY_STALEMATE;
             }
@@ -230,9 +636,9 @@ public class Board {
             gameResult = GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL;
         } else if (halfMoveCounter == 100) {
             gameResult = GameResult.DRAW_AFTER_50_MOVES;
+        } else if (getRepetitionCount() >= 3) {
+            gameResult = GameResult.DRAW_AFTER_REPETITION;
         }
-
-        // TODO: append to PGN
     }
 
     public void move(String from, String to, PromotionPiece promotionPiece) throws IllegalMoveException {
@@ -247,692 +653,541 @@ public class Board {
         move(from, to, PromotionPiece.QUEEN);
     }
 
-    private void moveInternal(Move move, boolean intendToUndo) {
-        // Update moved flag
-        move.getPiece().setMoved(true);
-
-        if (!intendToUndo && pieces[move.getTo()] != null) {
-            changePieceCounter(pieces[move.getTo()], false);
+    // Plays a legal move code found by findSanMove
+    void moveCode(int code) throws IllegalMoveException {
+        if (gameResult != GameResult.NOT_FINISHED) {
+            throw new IllegalMoveException("The game is finished");
         }
 
-        // Move the piece, works well for regular moves and captures
-        setPiecePosition(move.getFrom(), move.getTo());
-        pieces[move.getFrom()] = null;
+        playClockedMove(possibleMove(code));
+    }
 
-        if (move.isEnpassant()) {
-            // Remove taken pawn from the board
-            int fromRank = positionToRank(move.getFrom());
-            int toFile = CoreUtils.positionToFile(move.getTo());
-            if (!intendToUndo) {
-                changePieceCounter(pieces[fromRank * 8 + toFile], false);
-            }
-            pieces[fromRank * 8 + toFile] = null;
+    // Legal move code written in SAN, -1 if there is no such move or -2 if the SAN fits several moves.
+    // Check, mate and annotation signs are ignored, castling may be written with zeros as well.
+    int findSanMove(CharSequence san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) != -1) {
+            end--;
         }
 
-        if (move.isCastling()) {
-            int index = whiteToMove ? 0 : 1;
-            if (move.getFrom() < move.getTo()) {
-                // Kingside castling
-                setPiecePosition(move.getFrom() + 3, move.getFrom() + 1);
-                pieces[move.getFrom() + 3] = null;
-                kingsideCastlingPossible[index] = false;
-            } else {
-                // Queenside castling
-                setPiecePosition(move.getFrom() - 4, move.getFrom() - 1);
-                pieces[move.getFrom() - 4] = null;
-                queensideCastlingPossible[index] = false;
+        // Castling is a king move by two files
+        int castlingLength = end == 3 ? 2 : end == 5 ? -2 : 0;
+        if (castlingLength != 0 && (san.charAt(0) == 'O' || san.charAt(0) == '0')) {
+            for (int i = 1; i < end; i++) {
+                if (san.charAt(i) != (i % 2 == 1 ? '-' : san.charAt(0))) {
+                    return -1;
+                }
+            }
+            buildSanIndex();
+            int kingSquare = Long.numberOfTrailingZeros(state.pieces(state.sideToMove, Piece.KING));
+            for (int i = sanIndexHeads[Piece.KING * 64 + kingSquare + castlingLength]; i != -1; i = sanIndexNext[i]) {
+                if (MoveCode.isCastling(legalMoves[i])) {
+                    return legalMoves[i];
+                }
             }
+            return -1;
         }
 
-        // Promotion
-        if (move.getPromotionPieceClass() != null) {
-            addPiece(move.getPromotionPieceClass(), move.getPiece().isWhite(), move.getTo());
+        int start = 0;
+        int type = Piece.PAWN;
+        if (end > 0 && "NBRQK".indexOf(san.charAt(0)) != -1) {
+            type = CoreUtils.charToPieceType(san.charAt(0));
+            start = 1;
         }
-    }
-
-    private void undoMoveInternal(Move move) {
-        // Update moved flag
-        if (move.isFirstPieceMove()) {
-            move.getPiece().setMoved(false);
+        int promotionType = -1;
+        if (type == Piece.PAWN && end > 2 && "NBRQ".indexOf(san.charAt(end - 1)) != -1) {
+            promotionType = CoreUtils.charToPieceType(san.charAt(end - 1));
+            end -= san.charAt(end - 2) == '=' ? 2 : 1;
+        }
+        if (end - start < 2) {
+            return -1;
         }
 
-        // Move the piece back
-        pieces[move.getFrom()] = move.getPiece();
-        move.getPiece().setPosition(move.getFrom());
-        pieces[move.getTo()] = null;
-
-        // Place the captured piece back
-        if (move.isEnpassant()) {
-            int fromRank = positionToRank(move.getFrom());
-            int toFile = CoreUtils.positionToFile(move.getTo());
-            int capturedPawnPosition = fromRank * 8 + toFile;
-            pieces[capturedPawnPosition] = move.getCapturedPiece();
-            move.getCapturedPiece().setPosition(capturedPawnPosition);
-        } else if (move.getCapturedPiece() != null) {
-            pieces[move.getTo()] = move.getCapturedPiece();
-            move.getCapturedPiece().setPosition(move.getTo());
+        char toFile = san.charAt(end - 2);
+        char toRank = san.charAt(end - 1);
+        if (toFile < 'a' || toFile > 'h' || toRank < '1' || toRank > '8') {
+            return -1;
+        }
+        int to = (toRank - '1') * 8 + toFile - 'a';
+
+        // Departure file and rank are optional, capture sign too
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x') {
+                return -1;
+            }
         }
 
-        if (move.isCastling()) {
-            int index = whiteToMove ? 0 : 1;
-            // Place the rook back
-            if (move.getFrom() < move.getTo()) {
-                // Kingside castling
-                setPiecePosition(move.getFrom() + 1, move.getFrom() + 3);
-                pieces[move.getFrom() + 1] = null;
-                kingsideCastlingPossible[index] = true;
-            } else {
-                // Queenside castling
-                setPiecePosition(move.getFrom() - 1, move.getFrom() - 4);
-                pieces[move.getFrom() - 1] = null;
-                queensideCastlingPossible[index] = true;
+        buildSanIndex();
+        int found = -1;
+        for (int i = sanIndexHeads[type * 64 + to]; i != -1; i = sanIndexNext[i]) {
+            int code = legalMoves[i];
+            int from = MoveCode.from(code);
+            if (MoveCode.isCastling(code) ||
+                    fromFile != -1 && CoreUtils.positionToFile(from) != fromFile ||
+                    fromRank != -1 && CoreUtils.positionToRank(from) != fromRank ||
+                    (MoveCode.isPromotion(code) ? MoveCode.promotionType(code) : -1) != promotionType) {
+                continue;
             }
+            if (found != -1) {
+                return -2;
+            }
+            found = code;
         }
+        return found;
     }
 
-    private void updatePossibleMoves() {
-        Move lastMove = getLastMove();
-        ArrayList<Move> unverifiedPossibleMoves = getUnverifiedPossibleMoves(lastMove, whiteToMove);
-        enpassantTo = -1;
+    private void moveInternal(Move move) {
+        detachPossibleMoves();
+        state.make(toMoveCode(move));
 
-        for (int i = 0; i < possibleMoves.length; i++) {
-            possibleMoves[i] = null;
-        }
-        possibleMovesList.clear();
+        // Keep piece objects in line with the bitboards
+        Piece piece = move.getPiece();
+        piece.setMoved(true);
 
-        // Verify possible moves don't put the king in check
-        King king = kings[whiteToMove ? 0 : 1];
-        for (Move move : unverifiedPossibleMoves) {
-            if (move.getPromotionMoves() == null) {
-                verifyPossibleMove(king, move, move);
-            } else {
-                for (Move promotionMove : move.getPromotionMoves()) {
-                    verifyPossibleMove(king, promotionMove, move);
-                }
-            }
+        Piece capturedPiece = move.getCapturedPiece();
+        if (capturedPiece != null) {
+            pieces[capturedPiece.getPosition()] = null;
         }
 
-        // Determine if some coords are excess
-        possibleMovesList.forEach(this::hideMoveExcessCoords);
-    }
+        pieces[move.getFrom()] = null;
+        pieces[move.getTo()] = piece;
+        piece.setPosition(move.getTo());
 
-    @SuppressWarnings("ConstantConditions")
-    private ArrayList<Move> getUnverifiedPossibleMoves(Move lastMove, boolean whiteToMove) {
-        ArrayList<Move> moves = new ArrayList<>();
+        if (move.isCastling()) {
+            int rookFrom = move.getFrom() < move.getTo() ? move.getFrom() + 3 : move.getFrom() - 4;
+            int rookTo = (move.getFrom() + move.getTo()) / 2;
+            Piece rook = pieces[rookFrom];
+            rook.setMoved(true);
+            rook.setPosition(rookTo);
+            pieces[rookTo] = rook;
+            pieces[rookFrom] = null;
+        }
 
-        for (int i = 0; i < 64; i++) {
-            Piece piece = pieces[i];
-            if (piece == null || piece.isWhite() != whiteToMove) {
-                continue;
-            }
+        // Promotion
+        if (move.getPromotionPieceClass() != null) {
+            pieces[move.getTo()] = createPiece(CoreUtils.pieceClassToType(move.getPromotionPieceClass()),
+                    piece.isWhite(), move.getTo());
+        }
 
-            boolean firstPieceMove = !piece.isMoved();
-            if (piece instanceof Pawn) {
-                int diff = piece.isWhite() ? 8 : -8;
-                int[] singleStepTo = new int[]{i + diff, i + diff - 1, i + diff + 1};
-                int doubleStepTo = i + 2 * diff;
-
-                // One-step move
-                for (int to : singleStepTo) {
-                    if (to >= 0 && to < 64) {
-                        Piece capturedPiece;
-                        if (Math.abs(CoreUtils.positionToFile(to) - CoreUtils.positionToFile(i)) == 1 && pieces[to] != null &&
-                                pieces[to].isWhite() != piece.isWhite()) {
-                            capturedPiece = pieces[to];
-                        } else if (CoreUtils.positionToFile(to) == CoreUtils.positionToFile(i) && pieces[to] == null) {
-                            capturedPiece = null;
-                        } else {
-                            continue;
-                        }
-
-                        moves.add(new Move(i, to, piece, capturedPiece, firstPieceMove, false, false));
-                    }
-                }
+        if (capturedPiece != null || move.getPromotionPieceClass() != null) {
+            updateInsufficientIndicators();
+        }
+    }
 
-                // First double-step move
-                if (piece.getRank() == (whiteToMove ? 1 : 6) && pieces[doubleStepTo] == null) {
-                    moves.add(new Move(i, doubleStepTo, piece, null, true, false, false));
-                }
+    private void unmoveInternal(Move move, int code) {
+        detachPossibleMoves();
+        state.unmake(code);
 
-                // Enpassant
-                int lastMoveFrom = lastMove != null ? lastMove.getFrom() : initEnpassantTo + diff;
-                int lastMoveTo = lastMove != null ? lastMove.getTo() : initEnpassantTo - diff;
-                if ((lastMove != null && Math.abs(lastMoveTo - lastMoveFrom) == 16 ||
-                        lastMove == null && initEnpassantTo != -1) && pieces[lastMoveTo] instanceof Pawn) {
-                    int to = 0;
-                    if (CoreUtils.positionToFile(i) > 0 && lastMoveTo == i - 1) {
-                        to = i + diff - 1;
-                    } else if (CoreUtils.positionToFile(i) < 7 && lastMoveTo == i + 1) {
-                        to = i + diff + 1;
-                    }
-
-                    if (to != 0) {
-                        moves.add(new Move(i, to, piece, pieces[lastMoveTo], false, true, false));
-                    }
-                }
-            } else {
-                // Fill the collection with simple attack moves
-                for (Integer to : new PieceAttacksIterable(piece)) {
-                    moves.add(new Move(i, to, piece, pieces[to], firstPieceMove, false, false));
-                }
-                // Castling
-                if (piece instanceof King && firstPieceMove) {
-                    int index = whiteToMove ? 0 : 1;
-
-                    if (kingsideCastlingPossible[index] && pieces[i + 3] != null && !pieces[i + 3].isMoved() &&
-                            pieces[i + 1] == null && pieces[i + 2] == null) {
-                        moves.add(new Move(i, i + 2, piece, null, true, false, true));
-                    }
-
-                    if (queensideCastlingPossible[index] && pieces[i - 4] != null && !pieces[i - 4].isMoved() &&
-                            pieces[i - 1] == null && pieces[i - 2] == null && pieces[i - 3] == null) {
-                        moves.add(new Move(i, i - 2, piece, null, true, false, true));
-                    }
-                }
-            }
+        Piece piece = move.getPiece();
+        if (move.isFirstPieceMove()) {
+            piece.setMoved(false);
         }
 
-        return moves;
-    }
+        pieces[move.getTo()] = null;
+        pieces[move.getFrom()] = piece;
+        piece.setPosition(move.getFrom());
 
-    private void verifyPossibleMove(King king, Move move, Move parentMove) {
-        // Try to perform the move to see the consequences
-        moveInternal(move, true);
+        if (move.isCastling()) {
+            int rookFrom = move.getFrom() < move.getTo() ? move.getFrom() + 3 : move.getFrom() - 4;
+            int rookTo = (move.getFrom() + move.getTo()) / 2;
+            Piece rook = pieces[rookTo];
+            rook.setMoved(false);
+            rook.setPosition(rookFrom);
+            pieces[rookFrom] = rook;
+            pieces[rookTo] = null;
+        }
 
-        // Verify that the king won't be in check
-        if (!checkForCheck(king, move.isCastling() ? move.getFrom() : -1)) {
-            // Move is legal
-            possibleMoves[move.getFrom() * 64 + move.getTo()] = parentMove;
-            possibleMovesList.add(move);
+        // Captured piece still knows where it was taken
+        Piece capturedPiece = move.getCapturedPiece();
+        if (capturedPiece != null) {
+            pieces[capturedPiece.getPosition()] = capturedPiece;
+        }
+    }
 
-            if (move.isEnpassant()) {
-                enpassantTo = move.getTo();
+    private void updatePossibleMoves() {
+        clearPossibleMoves();
+        movesEntry = moveCache != null ? moveCache.get(state) : null;
+        if (movesEntry != null) {
+            System.arraycopy(movesEntry.moves, 0, legalMoves, 0, movesEntry.moves.length);
+            legalMovesCount = movesEntry.moves.length;
+        } else {
+            legalMovesCount = generator.generate(legalMoves);
+            if (moveCache != null) {
+                movesEntry = moveCache.put(state, legalMoves, legalMovesCount);
             }
+        }
 
-            // Set extra data for all possible moves
-            King opponentKing = kings[whiteToMove ? 1 : 0];
-            // Determine if the move is check
-            boolean check = checkForCheck(opponentKing, -1);
-            // Check if oppent can move afterwards
-            boolean opponentCanMove = false;
-            ArrayList<Move> opponentMoves = getUnverifiedPossibleMoves(move, !whiteToMove);
-            for (Move opponentMove : opponentMoves) {
-                moveInternal(opponentMove, true);
-                opponentCanMove = !checkForCheck(opponentKing, opponentMove.isCastling() ? opponentMove.getFrom() : -1);
-                undoMoveInternal(opponentMove);
-                if (opponentCanMove) {
-                    break;
-                }
+        enpassantTo = -1;
+        for (int i = 0; i < legalMovesCount; i++) {
+            if (MoveCode.isEnpassant(legalMoves[i])) {
+                enpassantTo = MoveCode.to(legalMoves[i]);
             }
-
-            move.setCheck(check);
-            move.setLastMove(!opponentCanMove);
         }
-
-        // Undo the move trial
-        undoMoveInternal(move);
     }
 
-    @SuppressWarnings("Duplicates")
-    private void hideMoveExcessCoords(Move move) {
-        // Default values
-        boolean fromFileExcess = true;
-        boolean fromRankExcess = true;
-
-        int moveFromRank = CoreUtils.positionToRank(move.getFrom());
-        int moveFromFile = CoreUtils.positionToFile(move.getFrom());
-
-        // Pawn are handled different from other pieces
-        if (move.getPiece() instanceof Pawn) {
-            // If pawn captures something, departure file should be visible
-            fromFileExcess = move.getCapturedPiece() == null;
-        } else {
-            // Departure file (or rank) should be visible if there is another piece
-            // of the same type on the same rank (or file), which also can move there
-
-            // Scan departure file
-            for (int i = 0; i < 8 && fromRankExcess; i++) {
-                if (i == moveFromRank) {
-                    continue;
-                }
+    private void buildPossibleMoves() {
+        if (possibleMovesList != null) {
+            return;
+        }
 
-                int otherMoveFrom = i * 8 + moveFromFile;
-                Move otherMove = possibleMoves[otherMoveFrom * 64 + move.getTo()];
-                if (otherMove != null && otherMove.getPiece().getClass() == move.getPiece().getClass()) {
-                    fromRankExcess = false;
-                }
+        possibleMovesList = new ArrayList<>(legalMovesCount);
+        for (int i = 0; i < legalMovesCount; i++) {
+            int code = legalMoves[i];
+            int from = MoveCode.from(code);
+            int to = MoveCode.to(code);
+
+            Move move = possibleMoves[from * 64 + to];
+            if (move == null) {
+                move = MoveCode.isPromotion(code) ? new Move(from, to, pieces[from], pieces[to], !pieces[from].isMoved(), false, false) :
+                        createMove(code);
+                possibleMoves[from * 64 + to] = move;
             }
 
-            // Scan departure rank
-            for (int i = 0; i < 8 && fromFileExcess; i++) {
-                if (i == moveFromFile) {
-                    continue;
-                }
-
-                int otherMoveFrom = moveFromRank * 8 + i;
-                Move otherMove = possibleMoves[otherMoveFrom * 64 + move.getTo()];
-                if (otherMove != null && otherMove.getPiece().getClass() == move.getPiece().getClass()) {
-                    fromFileExcess = false;
-                }
+            // Promotion moves are stored under the parent move
+            if (MoveCode.isPromotion(code)) {
+                move = move.getPromotionMoves()[promotionPieceIndex(MoveCode.promotionType(code))];
+                hideMoveExcessCoords(move);
             }
-        }
 
-        move.setFromFileExcess(fromFileExcess);
-        move.setFromRankExcess(fromRankExcess);
-        move.updateAlgebraic();
-    }
-
-    private boolean checkForCheck(King king, int castlingMoveFrom) {
-        for (Piece piece : pieces) {
-            if (piece != null && piece.isWhite() != king.isWhite()) {
-                for (Integer attackSquare : new PieceAttacksIterable(piece)) {
-                    boolean moveIsCastling = castlingMoveFrom != -1;
-                    boolean kingWillBeUnderAttack = attackSquare == king.getPosition();
-                    boolean kingIsUnderAttackDuringCastling = attackSquare == castlingMoveFrom;
-                    boolean castlingHalfMoveUnderAttack = attackSquare == (king.getPosition() + castlingMoveFrom) / 2;
-                    if (kingWillBeUnderAttack || moveIsCastling && (kingIsUnderAttackDuringCastling || castlingHalfMoveUnderAttack)) {
-                        // Regular check
-                        return true;
-                    }
-                }
+            // Check flags are worked out on demand, unless another board did it already
+            move.setOrigin(state, code);
+            if (movesEntry != null) {
+                move.setCacheSlot(movesEntry, i);
             }
+            possibleMovesList.add(move);
         }
-        return false;
     }
 
-    private void parseFEN(String fen) throws FENFormatException {
-        String[] fenParts = fen.split(" ");
-        if (fenParts.length != 6) {
-            throw new FENFormatException("Invalid sections count (6 sections are expected)");
+    // Built moves belong to the position they were generated in
+    private void clearPossibleMoves() {
+        sanIndexBuilt = false;
+        singleMove = null;
+        movesEntry = null;
+        if (possibleMovesList == null) {
+            return;
         }
 
-        parseFENPieces(fenParts[0]);
-        parseFENMoveOrder(fenParts[1]);
-        parseFENCastling(fenParts[2]);
-        parseFENEnpassant(fenParts[3]);
-
-        try {
-            halfMoveCounter = Integer.parseInt(fenParts[4]);
-            fullMoveCounter = Integer.parseInt(fenParts[5]);
-        } catch (NumberFormatException e) {
-            throw new FENFormatException("Move counters aren't integers");
+        for (int i = 0; i < legalMovesCount; i++) {
+            possibleMoves[MoveCode.from(legalMoves[i]) * 64 + MoveCode.to(legalMoves[i])] = null;
         }
+        possibleMovesList = null;
+    }
 
-        if (halfMoveCounter < 0) {
-            throw new FENFormatException("Half-move counter must be 0 or greater");
+    // Possible moves with unresolved flags must not see the position change, so they get a copy of it
+    private void detachPossibleMoves() {
+        if (singleMove != null && !singleMove.isFlagsResolved()) {
+            singleMove.setOrigin(state.copy(), toMoveCode(singleMove));
         }
-        if (fullMoveCounter < 1) {
-            throw new FENFormatException("Full move counter must be 1 or greater");
+        if (possibleMovesList == null) {
+            return;
         }
-    }
-
-    private void parseFENPieces(String fen) throws FENFormatException {
-        int position = 56;
-        int rankSquaresCounter = 0;
-        int ranksCounter = 0;
-
-        // Parse pieces positions
-        for (int i = 0; i < fen.length(); i++) {
-            char c = fen.charAt(i);
-            if (rankSquaresCounter > 8) {
-                throw new FENFormatException("Rank squares count of 8 was exceeded");
-            }
-            if (ranksCounter > 7) {
-                throw new FENFormatException("Ranks count of 8 was exceeded");
-            }
 
-            if (Character.isLetter(c)) {
-                // Letter means a piece
-                Class<? extends Piece> pieceClass = CoreUtils.charToPieceClass(c);
-                if (pieceClass != null) {
-                    // Piece color is determined by letter case
-                    boolean white = Character.isUpperCase(c);
-                    // Create piece instance and add it to the board
-                    Piece piece = addPiece(pieceClass, white, position);
-                    if (pieceClass == King.class) {
-                        int index = white ? 0 : 1;
-                        if (kings[index] != null) {
-                            throw new FENFormatException("Board can have only one king of each color");
-                        }
-                        kings[index] = (King) piece;
-                    }
-                    // Move to the next square
-                    position++;
-                    rankSquaresCounter++;
-                } else {
-                    throw new FENFormatException("Letter specified in pieces section doesn't represent a piece");
+        BitboardPosition origin = null;
+        for (Move move : possibleMovesList) {
+            if (!move.isFlagsResolved()) {
+                if (origin == null) {
+                    origin = state.copy();
                 }
-            } else if (Character.isDigit(c)) {
-                // Digit means blank squares
-                int count = (int) c - (int) '0';
-                position += count;
-                rankSquaresCounter += count;
-            } else if (c == '/') {
-                // Slash means the next rank
-                if (rankSquaresCounter < 8) {
-                    throw new FENFormatException("Rank squares count of 8 wasn't reached");
-                }
-                rankSquaresCounter = 0;
-                ranksCounter++;
-                position -= 16;
-            } else {
-                throw new FENFormatException("Invalid character in pieces section");
+                move.setOrigin(origin, toMoveCode(move));
             }
         }
+    }
+
+    // Instance of a legal move code that is also listed by getPossibleMoves
+    Move getPossibleMove(int code) {
+        buildPossibleMoves();
+        return possibleMove(code);
+    }
 
-        if (ranksCounter < 7) {
-            throw new FENFormatException("Not all squares were specified in the pieces section");
+    // Legal move by coordinates, promotion index is a PromotionPiece ordinal. Already built instance is
+    // preferred, otherwise only this single move is built.
+    private Move findPossibleMove(int from, int to, int promotionIndex) {
+        for (int i = 0; i < legalMovesCount; i++) {
+            int code = legalMoves[i];
+            if (MoveCode.from(code) != from || MoveCode.to(code) != to ||
+                    MoveCode.isPromotion(code) && promotionPieceIndex(MoveCode.promotionType(code)) != promotionIndex) {
+                continue;
+            }
+
+            return possibleMove(code);
         }
+        return null;
+    }
 
-        if (kings[0] == null || kings[1] == null) {
-            throw new FENFormatException("Both kings should be specified");
+    // Move object of a legal move code, already built instance is preferred
+    private Move possibleMove(int code) {
+        if (possibleMovesList == null) {
+            // Only the latest single move is detached when the position changes
+            if (singleMove != null) {
+                singleMove.resolveFlags();
+            }
+            singleMove = createMove(code);
+            singleMove.setOrigin(state, code);
+            if (movesEntry != null) {
+                singleMove.setCacheSlot(movesEntry, legalMoveIndex(code));
+            }
+            return singleMove;
         }
+        Move move = possibleMoves[MoveCode.from(code) * 64 + MoveCode.to(code)];
+        return MoveCode.isPromotion(code) ?
+                move.getPromotionMoves()[promotionPieceIndex(MoveCode.promotionType(code))] : move;
     }
 
-    private void parseFENMoveOrder(String fen) throws FENFormatException {
-        switch (fen) {
-            case "w":
-                whiteToMove = true;
-                break;
-            case "b":
-                whiteToMove = false;
-                break;
-            default:
-                throw new FENFormatException("Move order is specified incorrectly ('w' or 'b' are expected");
+    private int legalMoveIndex(int code) {
+        int i = 0;
+        while (legalMoves[i] != code) {
+            i++;
         }
+        return i;
     }
 
-    private void parseFENCastling(String fen) throws FENFormatException {
-        if (fen.equals("-")) {
+    private void buildSanIndex() {
+        if (sanIndexBuilt) {
             return;
         }
 
-        for (int i = 0; i < fen.length(); i++) {
-            char c = fen.charAt(i);
-            int index = Character.isUpperCase(c) ? 0 : 1;
-            boolean white = index == 0;
-            Piece initKing = pieces[4 + index * 56];
-            Piece initKingsideRook = pieces[7 + index * 56];
-            Piece initQueensideRook = pieces[index * 56];
-            if (Character.toLowerCase(c) == 'k') {
-                if (kingsideCastlingPossible[index]) {
-                    throw new FENFormatException("Kingside castling possibility is specified more than once");
-                }
-                if (!(initKing instanceof King) || initKing.isWhite() != white ||
-                        !(initKingsideRook instanceof Rook) || initKingsideRook.isWhite() != white) {
-                    throw new FENFormatException("Castling impossible - king and/or kingside rook are off");
-                }
-
-                kingsideCastlingPossible[index] = true;
-            } else if (Character.toLowerCase(c) == 'q') {
-                if (queensideCastlingPossible[index]) {
-                    throw new FENFormatException("Queenside castling possibility is specified more than once");
-                }
-                if (!(initKing instanceof King) || initKing.isWhite() != white ||
-                        !(initQueensideRook instanceof Rook) || initQueensideRook.isWhite() != white) {
-                    throw new FENFormatException("Castling impossible - king and/or queenside rook are off");
-                }
-
-                queensideCastlingPossible[index] = true;
-            } else {
-                throw new FENFormatException("Invalid character in the castling section");
-            }
+        // Chains keep the generation order
+        Arrays.fill(sanIndexHeads, -1);
+        for (int i = legalMovesCount - 1; i >= 0; i--) {
+            int key = state.typeAt(MoveCode.from(legalMoves[i])) * 64 + MoveCode.to(legalMoves[i]);
+            sanIndexNext[i] = sanIndexHeads[key];
+            sanIndexHeads[key] = i;
         }
+        sanIndexBuilt = true;
     }
 
-    private void parseFENEnpassant(String fen) throws FENFormatException {
-        if (fen.equals("-")) {
-            return;
-        }
+    private Move createMove(int code) {
+        int from = MoveCode.from(code);
+        int to = MoveCode.to(code);
+        Piece piece = pieces[from];
+        boolean enpassant = MoveCode.isEnpassant(code);
+        Piece capturedPiece = pieces[enpassant ? (from & ~7) | (to & 7) : to];
+
+        Move move = MoveCode.isPromotion(code) ?
+                new Move(from, to, piece, capturedPiece, Move.promotionPieceClass(MoveCode.promotionType(code))) :
+                new Move(from, to, piece, capturedPiece, !piece.isMoved(), enpassant, MoveCode.isCastling(code));
+        hideMoveExcessCoords(move);
+        return move;
+    }
 
-        if (fen.length() != 2 || fen.charAt(0) < 'a' || fen.charAt(0) > 'h' ||
-                !(whiteToMove && fen.charAt(1) == '6') && !(!whiteToMove && fen.charAt(1) == '3')) {
-            throw new FENFormatException("Enpassant square is incorrect");
+    private static int toMoveCode(Move move) {
+        int from = move.getFrom();
+        int to = move.getTo();
+        if (move.getPromotionPieceClass() != null) {
+            return MoveCode.promotion(from, to, CoreUtils.pieceClassToType(move.getPromotionPieceClass()));
+        } else if (move.isEnpassant()) {
+            return MoveCode.of(from, to, MoveCode.ENPASSANT);
+        } else if (move.isCastling()) {
+            return MoveCode.of(from, to, MoveCode.CASTLING);
+        } else if (move.getPiece() instanceof Pawn && Math.abs(to - from) == 16) {
+            return MoveCode.of(from, to, MoveCode.DOUBLE_STEP);
         }
-
-        initEnpassantTo = CoreUtils.algebraicToPosition(fen);
+        return MoveCode.of(from, to);
     }
 
-    @SuppressWarnings("ConstantConditions")
-    private String buildFEN() {
-        StringBuilder stringBuilder = new StringBuilder();
+    private static int promotionPieceIndex(int type) {
+        switch (type) {
+            case Piece.QUEEN:
+                return PromotionPiece.QUEEN.ordinal();
+            case Piece.KNIGHT:
+                return PromotionPiece.KNIGHT.ordinal();
+            case Piece.ROOK:
+                return PromotionPiece.ROOK.ordinal();
+            default:
+                return PromotionPiece.BISHOP.ordinal();
+        }
+    }
 
-        // Pieces positions
-        int position = 56;
-        int blankCounter = 0;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j <= 8; j++) {
-                Piece piece = j < 8 ? pieces[position] : null;
+    private void hideMoveExcessCoords(Move move) {
+        // Default values
+        boolean fromFileExcess = true;
+        boolean fromRankExcess = true;
 
-                if (j == 8 || piece != null) {
-                    if (blankCounter > 0) {
-                        stringBuilder.append(blankCounter);
-                    }
-                    blankCounter = 0;
+        // Pawn are handled different from other pieces
+        if (move.getPiece() instanceof Pawn) {
+            // If pawn captures something, departure file should be visible
+            fromFileExcess = move.getCapturedPiece() == null;
+        } else {
+            // Departure file (or rank) should be visible if there is another piece
+            // of the same type on the same rank (or file), which also can move there
+            buildSanIndex();
+            boolean ambiguous = false;
+            for (int i = sanIndexHeads[move.getPiece().getType() * 64 + move.getTo()]; i != -1; i = sanIndexNext[i]) {
+                int otherMoveFrom = MoveCode.from(legalMoves[i]);
+                if (otherMoveFrom == move.getFrom()) {
+                    continue;
                 }
 
-                if (j < 8) {
-                    if (piece == null) {
-                        blankCounter++;
-                    } else {
-                        char c = CoreUtils.pieceClassToChar(piece.getClass());
-                        if (piece.isWhite()) {
-                            c = Character.toUpperCase(c);
-                        }
-                        stringBuilder.append(c);
-                    }
-
-                    position++;
-                } else if (i < 7) {
-                    stringBuilder.append('/');
+                ambiguous = true;
+                if (CoreUtils.positionToFile(otherMoveFrom) == CoreUtils.positionToFile(move.getFrom())) {
+                    fromRankExcess = false;
+                }
+                if (CoreUtils.positionToRank(otherMoveFrom) == CoreUtils.positionToRank(move.getFrom())) {
+                    fromFileExcess = false;
                 }
             }
-            position -= 16;
+
+            // Pieces on different files and ranks are told apart by the file
+            if (ambiguous && fromFileExcess && fromRankExcess) {
+                fromFileExcess = false;
+            }
         }
 
-        // Move order
-        stringBuilder.append(" ").append(whiteToMove ? "w" : "b").append(" ");
+        move.setFromFileExcess(fromFileExcess);
+        move.setFromRankExcess(fromRankExcess);
+    }
 
-        // Castling
-        StringBuilder castlingStringBuilder = new StringBuilder();
-        if (kingsideCastlingPossible[0]) {
-            castlingStringBuilder.append("K");
-        }
-        if (queensideCastlingPossible[0]) {
-            castlingStringBuilder.append("Q");
-        }
-        if (kingsideCastlingPossible[1]) {
-            castlingStringBuilder.append("k");
+    private String getFEN(int ply) {
+        String fen = getCachedFEN(ply);
+        if (fen != null) {
+            return fen;
         }
-        if (queensideCastlingPossible[1]) {
-            castlingStringBuilder.append("q");
-        }
-        stringBuilder.append(castlingStringBuilder.length() > 0 ? castlingStringBuilder : "-").append(" ");
-
-        // Enpassant
-        stringBuilder.append(enpassantTo != -1 ? CoreUtils.positionToAlgebraic(enpassantTo) : "-").append(" ");
 
-        // Move counters
-        stringBuilder.append(halfMoveCounter).append(" ").append(fullMoveCounter);
+        BitboardPosition position = state;
+        if (ply < historySize - 1) {
+            // Past position has to be restored from the initial one
+            position = initialState.copy();
+            for (int i = 1; i <= ply; i++) {
+                position.make(moveHistory[i]);
+            }
+        }
+        return cacheFEN(ply, buildFEN(position, ply));
+    }
 
-        return stringBuilder.toString();
+    private String getCachedFEN(int ply) {
+        int slot = ply % FEN_CACHE_SIZE;
+        return fenCachePlies[slot] == ply ? fenCache[slot] : null;
     }
 
+    private String cacheFEN(int ply, String fen) {
+        int slot = ply % FEN_CACHE_SIZE;
+        fenCache[slot] = fen;
+        fenCachePlies[slot] = ply;
+        return fen;
+    }
 
-    private Piece addPiece(Class<? extends Piece> pieceClass, boolean white, int position) {
-        try {
-            Piece piece = pieceClass.newInstance();
-            piece.setWhite(white);
-            piece.setPosition(position);
-            pieces[position] = piece;
+    // FEN of the current position built from scratch, bypassing the cache
+    String buildFEN() {
+        return buildFEN(state, historySize - 1);
+    }
 
-            changePieceCounter(piece, true);
+    private String buildFEN(BitboardPosition position, int ply) {
+        int plyInfo = plyInfoHistory[ply];
+        // Full move counter grows after each black move
+        int fullMoves = initialFullMoveCounter + (ply + (initialState.sideToMove == BitboardPosition.WHITE ? 0 : 1)) / 2;
+        return position.toFEN((plyInfo & 127) - 1, plyInfo >>> 9, fullMoves);
+    }
 
-            return piece;
-        } catch (InstantiationException | IllegalAccessException ignored) {
+    private void publishSnapshot() {
+        if (publishingSnapshots) {
+            // Volatile write makes all the copied state visible to the readers
+            snapshot = createSnapshot();
         }
+    }
 
-        return null;
+    private Position createSnapshot() {
+        return new Position(state.readOnlyCopy(), Arrays.copyOf(legalMoves, legalMovesCount), enpassantTo,
+                halfMoveCounter, fullMoveCounter, whiteTime, blackTime, increment, lastMoveTime, gameResult);
     }
 
-    private void changePieceCounter(Piece piece, boolean increase) {
-        int index = piece.isWhite() ? 0 : 1;
-        int increment = increase ? 1 : -1;
-        if (piece.getClass() == Queen.class) {
-            queenCount[index] += increment;
-        } else if (piece.getClass() == Rook.class) {
-            rookCount[index] += increment;
-        } else if (piece.getClass() == Bishop.class) {
-            bishopCount[index] += increment;
-        } else if (piece.getClass() == Knight.class) {
-            knightCount[index] += increment;
-        } else if (piece.getClass() == Pawn.class) {
-            pawnCount[index] += increment;
+    private void addHistory(int move) {
+        if (historySize == hashHistory.length) {
+            hashHistory = Arrays.copyOf(hashHistory, historySize * 2);
+            moveHistory = Arrays.copyOf(moveHistory, historySize * 2);
+            plyInfoHistory = Arrays.copyOf(plyInfoHistory, historySize * 2);
+            whiteTimeHistory = Arrays.copyOf(whiteTimeHistory, historySize * 2);
+            blackTimeHistory = Arrays.copyOf(blackTimeHistory, historySize * 2);
+            lastMoveTimeHistory = Arrays.copyOf(lastMoveTimeHistory, historySize * 2);
         }
-
-        if (!increase) {
-            updateInsufficientIndicators();
+        hashHistory[historySize] = state.hash;
+        moveHistory[historySize] = move;
+        plyInfoHistory[historySize] = halfMoveCounter << 9 | (enpassantTo + 1) |
+                (insufficient[0] ? INSUFFICIENT_WHITE : 0) | (insufficient[1] ? INSUFFICIENT_BLACK : 0);
+        whiteTimeHistory[historySize] = whiteTime;
+        blackTimeHistory[historySize] = blackTime;
+        lastMoveTimeHistory[historySize] = lastMoveTime;
+        // Ply may have been used by another line before
+        if (fenCachePlies[historySize % FEN_CACHE_SIZE] == historySize) {
+            fenCache[historySize % FEN_CACHE_SIZE] = null;
         }
+        historySize++;
     }
 
-    private void updateInsufficientIndicators() {
-        for (int i = 0; i < 2; i++) {
-            if (insufficient[i]) {
-                // If amount of pieces is already insufficient, it can't be undone
-                continue;
-            }
-
-            if (queenCount[i] == 0 && rookCount[i] == 0 && pawnCount[i] == 0) {
-                // There are no queens, rooks or pawns, possibly it's insufficient material
-                if (bishopCount[i] == 0 && knightCount[i] == 0) {
-                    // No bishops and no knights is insufficient
-                    insufficient[i] = true;
-                } else if (bishopCount[i] == 0 && knightCount[i] < 3) {
-                    // No bishops and less than 3 knights is insufficient
-                    insufficient[i] = true;
-                } else if (bishopCount[i] > 0 && knightCount[i] == 0) {
-                    // No knights and some bishops
-                    if (bishopCount[i] == 1) {
-                        // Single bishop is surely not enough
-                        insufficient[i] = true;
-                    } else {
-                        // Even if there are 2 or more bishops - they must be different-colored
-                        boolean even = false;
-                        boolean odd = false;
-                        for (Piece piece : pieces) {
-                            if (piece instanceof Bishop && piece.isWhite() == (i == 0)) {
-                                if (piece.getPosition() % 2 == 0) {
-                                    even = true;
-                                } else {
-                                    odd = true;
-                                }
-                            }
-                        }
-
-                        if (!even || !odd) {
-                            insufficient[i] = true;
-                        }
-                    }
-                }
-            }
+    private Piece createPiece(int type, boolean white, int position) {
+        Piece piece;
+        switch (type) {
+            case Piece.PAWN:
+                piece = new Pawn(white, position);
+                break;
+            case Piece.KNIGHT:
+                piece = new Knight(white, position);
+                break;
+            case Piece.BISHOP:
+                piece = new Bishop(white, position);
+                break;
+            case Piece.ROOK:
+                piece = new Rook(white, position);
+                break;
+            case Piece.QUEEN:
+                piece = new Queen(white, position);
+                break;
+            default:
+                piece = new King(white, position);
+                break;
         }
+        pieces[position] = piece;
+        return piece;
     }
 
-    private void setPiecePosition(int from, int to) {
-        pieces[to] = pieces[from];
-        pieces[to].setPosition(to);
+
+    private void updateInsufficientIndicators() {
+        insufficient[0] = MaterialKey.isInsufficient(state.materialKey, true);
+        insufficient[1] = MaterialKey.isInsufficient(state.materialKey, false);
     }
 
+    // Squares the piece attacks which aren't occupied by pieces of its own color.
+    // Kept for compatibility, the attacks now come from precomputed tables.
+    @Deprecated
     public class PieceAttacksIterator implements Iterator<Integer> {
-        private Piece piece;
-        private Iterator<Direction> directionIterator;
-        private Direction direction;
-        private int rank;
-        private int file;
-        private boolean block;
-        private int next;
+        private long attacks;
 
         public PieceAttacksIterator(Piece piece) {
-            this.piece = piece;
-            directionIterator = piece.getAttackDirections().iterator();
-            block = true;
-            findNext();
+            int color = BitboardPosition.colorIndex(piece);
+            int type = CoreUtils.pieceClassToType(piece.getClass());
+            int square = piece.getPosition();
+            attacks = (type == Piece.PAWN ? Attacks.pawn(color, square) : Attacks.piece(type, square, state.occupied)) &
+                    ~state.colors[color];
         }
 
         @Override
         public boolean hasNext() {
-            return next != -1;
+            return attacks != 0;
         }
 
         @Override
         public Integer next() {
-            int result = next;
-            findNext();
-            return result;
+            if (attacks == 0) {
+                throw new NoSuchElementException();
+            }
+            int square = Long.numberOfTrailingZeros(attacks);
+            attacks &= attacks - 1;
+            return square;
         }
 
         @Override
         public void remove() {
             throw new UnsupportedOperationException();
         }
-
-        private void nextDirection() {
-            direction = directionIterator.next();
-            rank = piece.getRank() + direction.getRank();
-            file = piece.getFile() + direction.getFile();
-            block = false;
-        }
-
-        private boolean isCurrentDirectionValid() {
-            return !block && rank >= 0 && rank < 8 && file >= 0 && file < 8;
-        }
-
-        private void findNext() {
-            boolean found = false;
-
-            while (!found) {
-                // Switch directions until you find valid one
-                while (!isCurrentDirectionValid()) {
-                    if (directionIterator.hasNext()) {
-                        nextDirection();
-                    } else {
-                        // All directions are scanned, it's all over
-                        next = -1;
-                        return;
-                    }
-                }
-
-                // Determine position where piece can go
-                int position = rank * 8 + file;
-
-                // See if there is another piece on the way
-                Piece otherPiece = pieces[position];
-                if (otherPiece == null) {
-                    // Piece is free to go to the empty squares
-                    next = position;
-                    found = true;
-                } else {
-                    // Allow to capture enemy pieces
-                    if (otherPiece.isWhite() != piece.isWhite()) {
-                        next = position;
-                        found = true;
-                    }
-                    // Don't go further because other piece blocks
-                    block = true;
-                }
-
-                if (!piece.isLongRange()) {
-                    // Don't go further if piece is short range
-                    block = true;
-                } else {
-                    // Advance to the next square on current direction
-                    rank += direction.getRank();
-                    file += direction.getFile();
-                }
-            }
-        }
     }
 
+    @Deprecated
     public class PieceAttacksIterable implements Iterable<Integer> {
         private PieceAttacksIterator iterator;
 
@@ -945,4 +1200,4 @@ public class Board {
             return iterator;
         }
     }
-}
\ No newline at end of file
+}
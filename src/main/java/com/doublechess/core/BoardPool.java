@@ -0,0 +1,54 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Bounded thread-safe pool of boards. Released boards are reset for the next game instead of creating new ones,
+// boards released over the capacity are left to the garbage collector.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class BoardPool {
+    private final ArrayBlockingQueue<Board> boards;
+
+    public BoardPool(int capacity) {
+        boards = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public Board acquire() throws FENFormatException {
+        return acquire(Board.START_FEN, 0, 0, 0);
+    }
+
+    public Board acquire(long whiteTime, long blackTime, long increment) throws FENFormatException {
+        return acquire(Board.START_FEN, whiteTime, blackTime, increment);
+    }
+
+    public Board acquire(String fen) throws FENFormatException {
+        return acquire(fen, 0, 0, 0);
+    }
+
+    public Board acquire(String fen, long whiteTime, long blackTime, long increment) throws FENFormatException {
+        Board board = boards.poll();
+        if (board == null) {
+            return new Board(fen, whiteTime, blackTime, increment);
+        }
+
+        try {
+            board.reset(fen, whiteTime, blackTime, increment);
+        } catch (FENFormatException e) {
+            // Board is reset anyway the next time it's taken
+            boards.offer(board);
+            throw e;
+        }
+        return board;
+    }
+
+    // The board must not be used by the caller after it's released
+    public void release(Board board) {
+        boards.offer(board);
+    }
+
+    // Count of boards waiting for reuse
+    public int size() {
+        return boards.size();
+    }
+}
@@ -0,0 +1,197 @@
+package com.doublechess.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Game clocks of many boards. Boards attached with Board.setClock take the time from here and keep a timer
+// for the moment the player to move runs out of time, so games are flagged without waiting for a move.
+// Timers live in a hierarchical timing wheel: scheduling, cancelling and an empty tick are O(1)
+// regardless of the count of live games, timers far ahead are moved to finer levels as their time comes.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class ClockService implements AutoCloseable {
+    private static final long DEFAULT_TICK_MILLIS = 10;
+    // Each level has 64 slots, a slot of a level spans the whole lower level
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+
+    private final TimeSource timeSource;
+    private final long tickMillis;
+    // Heads of doubly linked timer lists, the last one is for timers beyond the top level
+    private final Timer[] slots = new Timer[LEVELS * SLOTS + 1];
+    // Ticks before this one are processed
+    private long currentTick;
+    private int size;
+    private ScheduledExecutorService ticker;
+
+    public ClockService() {
+        this(TimeSource.SYSTEM, DEFAULT_TICK_MILLIS);
+    }
+
+    public ClockService(TimeSource timeSource, long tickMillis) {
+        this.timeSource = timeSource;
+        this.tickMillis = tickMillis;
+        currentTick = timeSource.millis() / tickMillis;
+    }
+
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    public long now() {
+        return timeSource.millis();
+    }
+
+    // Ticks on a daemon thread, otherwise tick has to be called by the owner
+    public synchronized void start() {
+        if (ticker == null) {
+            ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "clock-service");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdown();
+            ticker = null;
+        }
+    }
+
+    // Action runs on the ticking thread not earlier than the deadline, within a tick after it
+    public Timer schedule(long deadline, Runnable action) {
+        Timer timer = new Timer(action);
+        reschedule(timer, deadline);
+        return timer;
+    }
+
+    // Timer gets the new deadline, it's scheduled again if it has already fired or was cancelled
+    public synchronized void reschedule(Timer timer, long deadline) {
+        if (timer.slot != -1) {
+            unlink(timer);
+        }
+        timer.deadline = deadline;
+        insert(timer);
+    }
+
+    // Count of scheduled timers
+    public synchronized int size() {
+        return size;
+    }
+
+    // Fires the timers up to the current time
+    public void tick() {
+        List<Timer> expired = new ArrayList<>();
+        synchronized (this) {
+            long nowTick = timeSource.millis() / tickMillis;
+            for (; currentTick <= nowTick; currentTick++) {
+                cascade();
+                int slot = (int) (currentTick & (SLOTS - 1));
+                while (slots[slot] != null) {
+                    Timer timer = slots[slot];
+                    unlink(timer);
+                    expired.add(timer);
+                }
+            }
+        }
+        // Actions may schedule timers again, so they run outside the lock
+        for (Timer timer : expired) {
+            timer.action.run();
+        }
+    }
+
+    // Timers of coarser slots starting at the current tick are spread over finer levels
+    private void cascade() {
+        if ((currentTick & (1L << (SLOT_BITS * LEVELS)) - 1) == 0) {
+            reinsert(LEVELS * SLOTS);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentTick & (1L << (SLOT_BITS * level)) - 1) == 0) {
+                reinsert(level * SLOTS + (int) (currentTick >>> (SLOT_BITS * level) & (SLOTS - 1)));
+            }
+        }
+    }
+
+    private void reinsert(int slot) {
+        Timer timer = slots[slot];
+        slots[slot] = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            size--;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(Timer timer) {
+        // First tick at or after the deadline, overdue timers fire on the next tick
+        long tick = Math.max(currentTick, (timer.deadline + tickMillis - 1) / tickMillis);
+        // Level is where the tick differs from the current one in the highest bits
+        long difference = tick ^ currentTick;
+        int level = difference == 0 ? 0 : (63 - Long.numberOfLeadingZeros(difference)) / SLOT_BITS;
+        int slot = level >= LEVELS ? LEVELS * SLOTS :
+                level * SLOTS + (int) (tick >>> (SLOT_BITS * level) & (SLOTS - 1));
+
+        timer.slot = slot;
+        timer.previous = null;
+        timer.next = slots[slot];
+        if (timer.next != null) {
+            timer.next.previous = timer;
+        }
+        slots[slot] = timer;
+        size++;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        } else {
+            slots[timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.slot = -1;
+        timer.previous = null;
+        timer.next = null;
+        size--;
+    }
+
+    public class Timer {
+        private final Runnable action;
+        private long deadline;
+        // Guarded by the service
+        private int slot = -1;
+        private Timer previous;
+        private Timer next;
+
+        private Timer(Runnable action) {
+            this.action = action;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isScheduled() {
+            synchronized (ClockService.this) {
+                return slot != -1;
+            }
+        }
+
+        public void cancel() {
+            synchronized (ClockService.this) {
+                if (slot != -1) {
+                    unlink(this);
+                }
+            }
+        }
+    }
+}
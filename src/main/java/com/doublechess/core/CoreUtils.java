@@ -7,6 +7,10 @@ import java.util.HashMap;
 public abstract class CoreUtils {
     private static final HashMap<Character, Class<? extends Piece>> PIECE_CLASSES_BY_CHARACTER;
     private static final HashMap<Class<? extends Piece>, Character> CHARACTERS_BY_PIECE_CLASS;
+    // Piece characters ordered by piece type codes
+    private static final String PIECE_TYPE_CHARS = "pnbrqk";
+    private static final String PIECE_TYPE_UPPER_CHARS = "PNBRQK";
+    private static final String[] SQUARE_NAMES = new String[64];
 
     static {
         PIECE_CLASSES_BY_CHARACTER = new HashMap<Character, Class<? extends Piece>>();
@@ -24,6 +28,10 @@ public abstract class CoreUtils {
         CHARACTERS_BY_PIECE_CLASS.put(Queen.class, 'q');
         CHARACTERS_BY_PIECE_CLASS.put(King.class, 'k');
         CHARACTERS_BY_PIECE_CLASS.put(Pawn.class, 'p');
+
+        for (int i = 0; i < SQUARE_NAMES.length; i++) {
+            SQUARE_NAMES[i] = new String(new char[]{positionToFileChar(i), positionToRankChar(i)});
+        }
     }
 
     public static int positionToRank(int position) {
@@ -46,8 +54,12 @@ public abstract class CoreUtils {
         return fileToChar(positionToFile(position));
     }
 
+    public static char positionToRankChar(int position) {
+        return (char) ((int) '1' + positionToRank(position));
+    }
+
     public static String positionToAlgebraic(int position) {
-        return String.format("%s%d", fileToChar(positionToFile(position)), positionToRank(position) + 1);
+        return SQUARE_NAMES[position];
     }
 
     public static int algebraicToPosition(String algebraic) {
@@ -58,6 +70,23 @@ public abstract class CoreUtils {
         return CHARACTERS_BY_PIECE_CLASS.get(pieceClass);
     }
 
+    public static char pieceTypeToChar(int type) {
+        return PIECE_TYPE_CHARS.charAt(type);
+    }
+
+    public static char pieceTypeToUpperChar(int type) {
+        return PIECE_TYPE_UPPER_CHARS.charAt(type);
+    }
+
+    public static int pieceClassToType(Class<? extends Piece> pieceClass) {
+        return PIECE_TYPE_CHARS.indexOf(pieceClassToChar(pieceClass));
+    }
+
+    // Piece type code of the letter in any case, -1 if the letter isn't a piece
+    public static int charToPieceType(char c) {
+        return PIECE_TYPE_CHARS.indexOf(Character.toLowerCase(c));
+    }
+
     public static Class<? extends Piece> charToPieceClass(char c) {
         return PIECE_CLASSES_BY_CHARACTER.get(Character.toLowerCase(c));
     }
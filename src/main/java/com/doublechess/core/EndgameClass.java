@@ -0,0 +1,15 @@
+package com.doublechess.core;
+
+// Kind of the position by the pieces left, see MaterialKey.getEndgameClass
+public enum EndgameClass {
+    // Too much material left for an endgame
+    MIDDLEGAME,
+    // Kings and pawns only
+    PAWN,
+    // Knights and bishops besides pawns
+    MINOR_PIECE,
+    ROOK,
+    QUEEN,
+    // Rooks or queens together with other pieces
+    MIXED
+}
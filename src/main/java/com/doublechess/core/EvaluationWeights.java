@@ -0,0 +1,233 @@
+package com.doublechess.core;
+
+import com.doublechess.core.piece.Piece;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Weights of the tapered evaluation: material and piece-square values for the middlegame and the endgame,
+// and game phase points of every piece type. Immutable, so one instance may be shared by any boards.
+//
+// Text format is a list of named tables of integers separated by whitespace, '#' starts a comment.
+// Tables missing in the text keep the default values:
+//   phase 0 1 1 2 4 0                  points by piece type: pawn, knight, bishop, rook, queen, king
+//   mg_material 82 337 365 477 1025 0  values by piece type, also eg_material
+//   mg_pawn ...                        64 values from a8 to h1 as white sees the board, also mg_knight,
+//                                      mg_bishop, mg_rook, mg_queen, mg_king and the same eg_ tables
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class EvaluationWeights {
+    private static final String[] TYPE_NAMES = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+
+    public static final EvaluationWeights DEFAULT = new EvaluationWeights(
+            new int[]{0, 1, 1, 2, 4, 0},
+            new int[]{82, 337, 365, 477, 1025, 0},
+            new int[]{94, 281, 297, 512, 936, 0},
+            new int[][]{Tables.PAWN, Tables.KNIGHT, Tables.BISHOP, Tables.ROOK, Tables.QUEEN, Tables.KING},
+            new int[][]{Tables.PAWN_ENDGAME, Tables.KNIGHT, Tables.BISHOP, Tables.ROOK, Tables.QUEEN,
+                    Tables.KING_ENDGAME});
+
+    private final int[] phases;
+    private final int[] middlegameMaterial;
+    private final int[] endgameMaterial;
+    private final int[][] middlegameTables;
+    private final int[][] endgameTables;
+
+    // Values by piece code (type | color << 3) and square from white's point of view, so black ones are
+    // mirrored and negated. Positions add them up as pieces come and go.
+    final int[] middlegame = new int[16 * 64];
+    final int[] endgame = new int[16 * 64];
+    final int[] phase = new int[16];
+    // Phase points of the initial set of pieces, the phase of a position is capped by it
+    final int maxPhase;
+
+    private EvaluationWeights(int[] phases, int[] middlegameMaterial, int[] endgameMaterial,
+                              int[][] middlegameTables, int[][] endgameTables) {
+        this.phases = phases;
+        this.middlegameMaterial = middlegameMaterial;
+        this.endgameMaterial = endgameMaterial;
+        this.middlegameTables = middlegameTables;
+        this.endgameTables = endgameTables;
+
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            for (int color = BitboardPosition.WHITE; color <= BitboardPosition.BLACK; color++) {
+                int code = type | color << 3;
+                int sign = color == BitboardPosition.WHITE ? 1 : -1;
+                phase[code] = phases[type];
+                for (int square = 0; square < 64; square++) {
+                    // Tables are written from rank 8 down, as white sees them
+                    int index = color == BitboardPosition.WHITE ? square ^ 56 : square;
+                    middlegame[code << 6 | square] = sign * (middlegameMaterial[type] + middlegameTables[type][index]);
+                    endgame[code << 6 | square] = sign * (endgameMaterial[type] + endgameTables[type][index]);
+                }
+            }
+        }
+        maxPhase = 2 * (8 * phases[Piece.PAWN] + 2 * phases[Piece.KNIGHT] + 2 * phases[Piece.BISHOP] +
+                2 * phases[Piece.ROOK] + phases[Piece.QUEEN] + phases[Piece.KING]);
+    }
+
+    public static EvaluationWeights load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    public static EvaluationWeights read(Reader reader) throws IOException {
+        int[] phases = DEFAULT.phases.clone();
+        int[] middlegameMaterial = DEFAULT.middlegameMaterial.clone();
+        int[] endgameMaterial = DEFAULT.endgameMaterial.clone();
+        int[][] middlegameTables = DEFAULT.middlegameTables.clone();
+        int[][] endgameTables = DEFAULT.endgameTables.clone();
+
+        StreamTokenizer tokenizer = new StreamTokenizer(reader);
+        tokenizer.resetSyntax();
+        tokenizer.wordChars('!', '~');
+        tokenizer.whitespaceChars(0, ' ');
+        tokenizer.commentChar('#');
+        while (tokenizer.nextToken() != StreamTokenizer.TT_EOF) {
+            String name = tokenizer.sval;
+            if (name.equals("phase")) {
+                readValues(tokenizer, name, phases);
+            } else if (name.equals("mg_material")) {
+                readValues(tokenizer, name, middlegameMaterial);
+            } else if (name.equals("eg_material")) {
+                readValues(tokenizer, name, endgameMaterial);
+            } else {
+                int type = name.length() > 3 ? indexOf(name.substring(3)) : -1;
+                if (type == -1 || !name.startsWith("mg_") && !name.startsWith("eg_")) {
+                    throw new IOException("Line " + tokenizer.lineno() + ": unknown table " + name);
+                }
+                int[][] tables = name.startsWith("mg_") ? middlegameTables : endgameTables;
+                tables[type] = new int[64];
+                readValues(tokenizer, name, tables[type]);
+            }
+        }
+        return new EvaluationWeights(phases, middlegameMaterial, endgameMaterial, middlegameTables, endgameTables);
+    }
+
+    // Writes all the tables in the format read back by read
+    public void write(Writer writer) throws IOException {
+        writeValues(writer, "phase", phases);
+        writeValues(writer, "mg_material", middlegameMaterial);
+        writeValues(writer, "eg_material", endgameMaterial);
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            writeValues(writer, "mg_" + TYPE_NAMES[type], middlegameTables[type]);
+        }
+        for (int type = Piece.PAWN; type <= Piece.KING; type++) {
+            writeValues(writer, "eg_" + TYPE_NAMES[type], endgameTables[type]);
+        }
+        writer.flush();
+    }
+
+    private static int indexOf(String typeName) {
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            if (TYPE_NAMES[type].equals(typeName)) {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    private static void readValues(StreamTokenizer tokenizer, String name, int[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (tokenizer.nextToken() != StreamTokenizer.TT_WORD) {
+                throw new IOException("Line " + tokenizer.lineno() + ": " + values.length + " values expected in " + name);
+            }
+            try {
+                values[i] = Integer.parseInt(tokenizer.sval);
+            } catch (NumberFormatException e) {
+                throw new IOException("Line " + tokenizer.lineno() + ": bad value " + tokenizer.sval + " in " + name);
+            }
+        }
+    }
+
+    private static void writeValues(Writer writer, String name, int[] values) throws IOException {
+        writer.write(name);
+        for (int i = 0; i < values.length; i++) {
+            writer.write(values.length == 64 && i % 8 == 0 ? "\n   " : " ");
+            writer.write(String.format("%4d", values[i]));
+        }
+        writer.write('\n');
+    }
+
+    // Default piece-square tables, from rank 8 down as white sees the board
+    private static final class Tables {
+        static final int[] PAWN = {
+                0, 0, 0, 0, 0, 0, 0, 0,
+                50, 50, 50, 50, 50, 50, 50, 50,
+                10, 10, 20, 30, 30, 20, 10, 10,
+                5, 5, 10, 25, 25, 10, 5, 5,
+                0, 0, 0, 20, 20, 0, 0, 0,
+                5, -5, -10, 0, 0, -10, -5, 5,
+                5, 10, 10, -20, -20, 10, 10, 5,
+                0, 0, 0, 0, 0, 0, 0, 0};
+        static final int[] PAWN_ENDGAME = {
+                0, 0, 0, 0, 0, 0, 0, 0,
+                80, 80, 80, 80, 80, 80, 80, 80,
+                50, 50, 50, 50, 50, 50, 50, 50,
+                30, 30, 30, 30, 30, 30, 30, 30,
+                15, 15, 15, 15, 15, 15, 15, 15,
+                5, 5, 5, 5, 5, 5, 5, 5,
+                0, 0, 0, 0, 0, 0, 0, 0,
+                0, 0, 0, 0, 0, 0, 0, 0};
+        static final int[] KNIGHT = {
+                -50, -40, -30, -30, -30, -30, -40, -50,
+                -40, -20, 0, 0, 0, 0, -20, -40,
+                -30, 0, 10, 15, 15, 10, 0, -30,
+                -30, 5, 15, 20, 20, 15, 5, -30,
+                -30, 0, 15, 20, 20, 15, 0, -30,
+                -30, 5, 10, 15, 15, 10, 5, -30,
+                -40, -20, 0, 5, 5, 0, -20, -40,
+                -50, -40, -30, -30, -30, -30, -40, -50};
+        static final int[] BISHOP = {
+                -20, -10, -10, -10, -10, -10, -10, -20,
+                -10, 0, 0, 0, 0, 0, 0, -10,
+                -10, 0, 5, 10, 10, 5, 0, -10,
+                -10, 5, 5, 10, 10, 5, 5, -10,
+                -10, 0, 10, 10, 10, 10, 0, -10,
+                -10, 10, 10, 10, 10, 10, 10, -10,
+                -10, 5, 0, 0, 0, 0, 5, -10,
+                -20, -10, -10, -10, -10, -10, -10, -20};
+        static final int[] ROOK = {
+                0, 0, 0, 0, 0, 0, 0, 0,
+                5, 10, 10, 10, 10, 10, 10, 5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                -5, 0, 0, 0, 0, 0, 0, -5,
+                0, 0, 0, 5, 5, 0, 0, 0};
+        static final int[] QUEEN = {
+                -20, -10, -10, -5, -5, -10, -10, -20,
+                -10, 0, 0, 0, 0, 0, 0, -10,
+                -10, 0, 5, 5, 5, 5, 0, -10,
+                -5, 0, 5, 5, 5, 5, 0, -5,
+                0, 0, 5, 5, 5, 5, 0, -5,
+                -10, 5, 5, 5, 5, 5, 0, -10,
+                -10, 0, 5, 0, 0, 0, 0, -10,
+                -20, -10, -10, -5, -5, -10, -10, -20};
+        static final int[] KING = {
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -30, -40, -40, -50, -50, -40, -40, -30,
+                -20, -30, -30, -40, -40, -30, -30, -20,
+                -10, -20, -20, -20, -20, -20, -20, -10,
+                20, 20, 0, 0, 0, 0, 20, 20,
+                20, 30, 10, 0, 0, 10, 30, 20};
+        static final int[] KING_ENDGAME = {
+                -50, -40, -30, -20, -20, -30, -40, -50,
+                -30, -20, -10, 0, 0, -10, -20, -30,
+                -30, -10, 20, 30, 30, 20, -10, -30,
+                -30, -10, 30, 40, 40, 30, -10, -30,
+                -30, -10, 30, 40, 40, 30, -10, -30,
+                -30, -10, 20, 30, 30, 20, -10, -30,
+                -30, -30, 0, 0, 0, 0, -30, -30,
+                -50, -30, -30, -30, -30, -30, -30, -50};
+    }
+}
@@ -0,0 +1,36 @@
+package com.doublechess.core;
+
+// Result of FEN parsing, NONE means the FEN is correct
+public enum FENError {
+    NONE(null),
+    SECTIONS_COUNT("Invalid sections count (6 sections are expected)"),
+    RANK_SQUARES_EXCEEDED("Rank squares count of 8 was exceeded"),
+    RANKS_EXCEEDED("Ranks count of 8 was exceeded"),
+    TOO_MANY_KINGS("Board can have only one king of each color"),
+    INVALID_PIECE_LETTER("Letter specified in pieces section doesn't represent a piece"),
+    RANK_SQUARES_NOT_REACHED("Rank squares count of 8 wasn't reached"),
+    INVALID_PIECES_CHARACTER("Invalid character in pieces section"),
+    SQUARES_MISSING("Not all squares were specified in the pieces section"),
+    KINGS_MISSING("Both kings should be specified"),
+    INVALID_MOVE_ORDER("Move order is specified incorrectly ('w' or 'b' are expected)"),
+    DUPLICATE_KINGSIDE_CASTLING("Kingside castling possibility is specified more than once"),
+    KINGSIDE_CASTLING_IMPOSSIBLE("Castling impossible - king and/or kingside rook are off"),
+    DUPLICATE_QUEENSIDE_CASTLING("Queenside castling possibility is specified more than once"),
+    QUEENSIDE_CASTLING_IMPOSSIBLE("Castling impossible - king and/or queenside rook are off"),
+    INVALID_CASTLING_CHARACTER("Invalid character in the castling section"),
+    INVALID_ENPASSANT_SQUARE("Enpassant square is incorrect"),
+    IMPOSSIBLE_ENPASSANT("Specified enpassant capture is impossible"),
+    INVALID_COUNTERS("Move counters aren't integers"),
+    NEGATIVE_HALF_MOVE_COUNTER("Half-move counter must be 0 or greater"),
+    INVALID_FULL_MOVE_COUNTER("Full move counter must be 1 or greater");
+
+    private final String message;
+
+    FENError(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,269 @@
+package com.doublechess.core;
+
+import com.doublechess.core.piece.Piece;
+
+import java.nio.ByteBuffer;
+
+// Single pass FEN parser writing straight into a position. Nothing is allocated and errors are returned as codes,
+// so it can go through big FEN sets quickly. Instances are reusable but not thread-safe.
+final class FENParser {
+    // Counters of the last successfully parsed FEN
+    int halfMoveCounter;
+    int fullMoveCounter;
+
+    // Source is either a char sequence or ASCII bytes
+    private CharSequence chars;
+    private ByteBuffer bytes;
+    private int end;
+    // Bounds of the current section
+    private int sectionStart;
+    private int sectionEnd;
+
+    FENError parse(CharSequence fen, BitboardPosition position) {
+        chars = fen;
+        try {
+            return parse(0, fen.length(), position);
+        } finally {
+            chars = null;
+        }
+    }
+
+    // Bytes between position and limit of the buffer are parsed, the buffer itself is left as it was
+    FENError parse(ByteBuffer fen, BitboardPosition position) {
+        bytes = fen;
+        try {
+            return parse(fen.position(), fen.limit(), position);
+        } finally {
+            bytes = null;
+        }
+    }
+
+    private FENError parse(int start, int end, BitboardPosition position) {
+        // Trailing spaces are ignored, any other space separates sections
+        while (end > start && charAt(end - 1) == ' ') {
+            end--;
+        }
+        int spaces = 0;
+        for (int i = start; i < end; i++) {
+            if (charAt(i) == ' ') {
+                spaces++;
+            }
+        }
+        if (spaces != 5) {
+            return FENError.SECTIONS_COUNT;
+        }
+
+        this.end = end;
+        sectionEnd = start - 1;
+
+        position.clear();
+        FENError error;
+        nextSection();
+        if ((error = parsePieces(position)) != FENError.NONE) {
+            return error;
+        }
+        nextSection();
+        if ((error = parseMoveOrder(position)) != FENError.NONE) {
+            return error;
+        }
+        nextSection();
+        if ((error = parseCastling(position)) != FENError.NONE) {
+            return error;
+        }
+        nextSection();
+        if ((error = parseEnpassant(position)) != FENError.NONE) {
+            return error;
+        }
+
+        nextSection();
+        long halfMoves = parseInteger();
+        nextSection();
+        long fullMoves = parseInteger();
+        if (halfMoves == Long.MIN_VALUE || fullMoves == Long.MIN_VALUE) {
+            return FENError.INVALID_COUNTERS;
+        }
+        if (halfMoves < 0) {
+            return FENError.NEGATIVE_HALF_MOVE_COUNTER;
+        }
+        if (fullMoves < 1) {
+            return FENError.INVALID_FULL_MOVE_COUNTER;
+        }
+        halfMoveCounter = (int) halfMoves;
+        fullMoveCounter = (int) fullMoves;
+
+        position.hash = position.computeHash();
+        return FENError.NONE;
+    }
+
+    private FENError parsePieces(BitboardPosition position) {
+        int square = 56;
+        int rankSquaresCounter = 0;
+        int ranksCounter = 0;
+
+        for (int i = sectionStart; i < sectionEnd; i++) {
+            char c = charAt(i);
+            if (rankSquaresCounter > 8) {
+                return FENError.RANK_SQUARES_EXCEEDED;
+            }
+            if (ranksCounter > 7) {
+                return FENError.RANKS_EXCEEDED;
+            }
+
+            if (Character.isLetter(c)) {
+                // Letter means a piece, its color is determined by letter case
+                int type = CoreUtils.charToPieceType(c);
+                if (type == -1) {
+                    return FENError.INVALID_PIECE_LETTER;
+                }
+                if (square < 0 || square > 63 || rankSquaresCounter > 7) {
+                    return FENError.RANK_SQUARES_EXCEEDED;
+                }
+                int color = BitboardPosition.colorIndex(Character.isUpperCase(c));
+                if (type == Piece.KING && position.pieces(color, Piece.KING) != 0) {
+                    return FENError.TOO_MANY_KINGS;
+                }
+                position.put(color, type, square);
+                square++;
+                rankSquaresCounter++;
+            } else if (c >= '0' && c <= '9') {
+                // Digit means blank squares
+                square += c - '0';
+                rankSquaresCounter += c - '0';
+            } else if (c == '/') {
+                // Slash means the next rank
+                if (rankSquaresCounter < 8) {
+                    return FENError.RANK_SQUARES_NOT_REACHED;
+                }
+                rankSquaresCounter = 0;
+                ranksCounter++;
+                square -= 16;
+            } else {
+                return FENError.INVALID_PIECES_CHARACTER;
+            }
+        }
+
+        if (ranksCounter < 7) {
+            return FENError.SQUARES_MISSING;
+        }
+        if (rankSquaresCounter > 8) {
+            return FENError.RANK_SQUARES_EXCEEDED;
+        }
+        if (position.pieces(BitboardPosition.WHITE, Piece.KING) == 0 ||
+                position.pieces(BitboardPosition.BLACK, Piece.KING) == 0) {
+            return FENError.KINGS_MISSING;
+        }
+        return FENError.NONE;
+    }
+
+    private FENError parseMoveOrder(BitboardPosition position) {
+        if (sectionEnd - sectionStart == 1) {
+            switch (charAt(sectionStart)) {
+                case 'w':
+                    position.sideToMove = BitboardPosition.WHITE;
+                    return FENError.NONE;
+                case 'b':
+                    position.sideToMove = BitboardPosition.BLACK;
+                    return FENError.NONE;
+            }
+        }
+        return FENError.INVALID_MOVE_ORDER;
+    }
+
+    private FENError parseCastling(BitboardPosition position) {
+        if (isDash()) {
+            return FENError.NONE;
+        }
+
+        for (int i = sectionStart; i < sectionEnd; i++) {
+            char c = charAt(i);
+            boolean white = Character.isUpperCase(c);
+            int color = BitboardPosition.colorIndex(white);
+            int base = white ? 0 : 56;
+            boolean kingInPlace = (position.pieces(color, Piece.KING) & 1L << (base + 4)) != 0;
+            long rooks = position.pieces(color, Piece.ROOK);
+
+            if (Character.toLowerCase(c) == 'k') {
+                int right = white ? BitboardPosition.WHITE_KINGSIDE : BitboardPosition.BLACK_KINGSIDE;
+                if ((position.castling & right) != 0) {
+                    return FENError.DUPLICATE_KINGSIDE_CASTLING;
+                }
+                if (!kingInPlace || (rooks & 1L << (base + 7)) == 0) {
+                    return FENError.KINGSIDE_CASTLING_IMPOSSIBLE;
+                }
+                position.castling |= right;
+            } else if (Character.toLowerCase(c) == 'q') {
+                int right = white ? BitboardPosition.WHITE_QUEENSIDE : BitboardPosition.BLACK_QUEENSIDE;
+                if ((position.castling & right) != 0) {
+                    return FENError.DUPLICATE_QUEENSIDE_CASTLING;
+                }
+                if (!kingInPlace || (rooks & 1L << base) == 0) {
+                    return FENError.QUEENSIDE_CASTLING_IMPOSSIBLE;
+                }
+                position.castling |= right;
+            } else {
+                return FENError.INVALID_CASTLING_CHARACTER;
+            }
+        }
+        return FENError.NONE;
+    }
+
+    private FENError parseEnpassant(BitboardPosition position) {
+        if (isDash()) {
+            return FENError.NONE;
+        }
+
+        if (sectionEnd - sectionStart != 2) {
+            return FENError.INVALID_ENPASSANT_SQUARE;
+        }
+        char file = charAt(sectionStart);
+        char rank = charAt(sectionStart + 1);
+        if (file < 'a' || file > 'h' || rank != (position.sideToMove == BitboardPosition.WHITE ? '6' : '3')) {
+            return FENError.INVALID_ENPASSANT_SQUARE;
+        }
+
+        position.enpassantSquare = CoreUtils.charToFile(file) + (rank - '1') * 8;
+        return FENError.NONE;
+    }
+
+    // Value of the section with optional sign, Long.MIN_VALUE if it isn't an int
+    private long parseInteger() {
+        int i = sectionStart;
+        boolean negative = false;
+        if (i < sectionEnd && (charAt(i) == '-' || charAt(i) == '+')) {
+            negative = charAt(i) == '-';
+            i++;
+        }
+        if (i == sectionEnd) {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+        for (; i < sectionEnd; i++) {
+            char c = charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                return Long.MIN_VALUE;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    private void nextSection() {
+        sectionStart = sectionEnd + 1;
+        sectionEnd = sectionStart;
+        while (sectionEnd < end && charAt(sectionEnd) != ' ') {
+            sectionEnd++;
+        }
+    }
+
+    private boolean isDash() {
+        return sectionEnd - sectionStart == 1 && charAt(sectionStart) == '-';
+    }
+
+    private char charAt(int index) {
+        return chars != null ? chars.charAt(index) : (char) (bytes.get(index) & 0xFF);
+    }
+}
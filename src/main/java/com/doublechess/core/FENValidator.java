@@ -0,0 +1,293 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Validates big FEN/EPD files by the same rules as Board constructor. The file is memory mapped in line-aligned chunks,
+// which are processed in parallel, each worker reusing its board. Valid positions go to one file as normalised FEN
+// (EPD keeps its operations), rejected lines go to another one followed by a tab and the reason.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class FENValidator {
+    private static final int DEFAULT_CHUNK_SIZE = 16 << 20;
+    // Line starting in a chunk may go on after its end for this long at most
+    private static final int MAX_LINE_LENGTH = 64 << 10;
+
+    private final int threads;
+    private final int chunkSize;
+
+    public FENValidator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public FENValidator(int threads) {
+        this(threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    FENValidator(int threads, int chunkSize) {
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    public Report validate(Path input, Path validOutput, Path rejectedOutput) throws IOException {
+        long startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        BoardPool boards = new BoardPool(threads);
+        Report report = new Report();
+
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+             Writer valid = Files.newBufferedWriter(validOutput, StandardCharsets.ISO_8859_1);
+             Writer rejected = Files.newBufferedWriter(rejectedOutput, StandardCharsets.ISO_8859_1)) {
+            long size = channel.size();
+            report.bytes = size;
+
+            // Results are written in the input order, a few chunks ahead are processed meanwhile
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+            long next = 0;
+            while (next < size || !pending.isEmpty()) {
+                while (next < size && pending.size() < threads * 2) {
+                    Chunk chunk = new Chunk(channel, size, next, Math.min(size, next + chunkSize), boards);
+                    pending.add(executor.submit(chunk::process));
+                    next += chunkSize;
+                }
+
+                Chunk chunk = pending.poll().get();
+                valid.append(chunk.valid);
+                rejected.append(chunk.rejected);
+                report.validLines += chunk.validLines;
+                report.rejectedLines += chunk.rejectedLines;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report.nanos = System.nanoTime() - startTime;
+        return report;
+    }
+
+    // Usage: FENValidator <input> <valid output> <rejected output> [threads]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: FENValidator <input> <valid output> <rejected output> [threads]");
+            System.exit(1);
+        }
+
+        FENValidator validator = args.length > 3 ? new FENValidator(Integer.parseInt(args[3])) : new FENValidator();
+        System.out.println(validator.validate(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2])));
+    }
+
+    public static class Report {
+        private long bytes;
+        private long validLines;
+        private long rejectedLines;
+        private long nanos;
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getValidLines() {
+            return validLines;
+        }
+
+        public long getRejectedLines() {
+            return rejectedLines;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getLinesPerSecond() {
+            return (validLines + rejectedLines) * 1e9 / Math.max(nanos, 1);
+        }
+
+        public double getMegabytesPerSecond() {
+            return bytes * 1e9 / (1 << 20) / Math.max(nanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d valid, %d rejected in %.3f s (%.0f lines/s, %.1f MB/s)",
+                    validLines, rejectedLines, nanos / 1e9, getLinesPerSecond(), getMegabytesPerSecond());
+        }
+    }
+
+    // Lines starting between start and end of the file
+    private static class Chunk {
+        private final FileChannel channel;
+        private final long size;
+        private final long start;
+        private final long end;
+        private final BoardPool boards;
+        private final EPDPosition epdPosition = new EPDPosition();
+        private final StringBuilder valid = new StringBuilder();
+        private final StringBuilder rejected = new StringBuilder();
+        private long validLines;
+        private long rejectedLines;
+
+        Chunk(FileChannel channel, long size, long start, long end, BoardPool boards) {
+            this.channel = channel;
+            this.size = size;
+            this.start = start;
+            this.end = end;
+            this.boards = boards;
+        }
+
+        Chunk process() throws IOException, FENFormatException {
+            // Byte before the chunk tells if the chunk starts with a new line
+            long mapStart = Math.max(0, start - 1);
+            long mapEnd = Math.min(size, end + MAX_LINE_LENGTH);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+
+            int position = (int) (start - mapStart);
+            int limit = (int) (end - mapStart);
+            if (start > 0 && buffer.get(0) != '\n') {
+                // Partial line belongs to the previous chunk
+                while (position < limit && buffer.get(position) != '\n') {
+                    position++;
+                }
+                position++;
+            }
+
+            Board board = boards.acquire();
+            try {
+                while (position < limit) {
+                    int lineEnd = position;
+                    while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n') {
+                        lineEnd++;
+                    }
+
+                    if (lineEnd == buffer.limit() && mapEnd < size) {
+                        reject(buffer, position, Math.min(lineEnd, position + 80), "Line is too long");
+                    } else {
+                        validateLine(board, buffer, position, lineEnd > position && buffer.get(lineEnd - 1) == '\r' ?
+                                lineEnd - 1 : lineEnd);
+                    }
+                    position = lineEnd + 1;
+                }
+            } finally {
+                boards.release(board);
+            }
+            return this;
+        }
+
+        private void validateLine(Board board, MappedByteBuffer buffer, int start, int end) {
+            if (start == end) {
+                return;
+            }
+
+            buffer.limit(end).position(start);
+            FENError error = board.tryReset(buffer, 0, 0, 0);
+            buffer.clear();
+            if (error == FENError.NONE) {
+                valid.append(board.getFEN()).append('\n');
+                validLines++;
+                return;
+            }
+
+            // Line may be EPD: position sections without counters, followed by operations
+            if (error == FENError.SECTIONS_COUNT || error == FENError.INVALID_COUNTERS) {
+                int positionEnd = epdPosition.wrap(buffer, start, end);
+                if (positionEnd != -1 && board.tryReset(epdPosition, 0, 0, 0) == FENError.NONE) {
+                    String fen = board.getFEN();
+                    // FEN without the counters plus the original operations
+                    valid.append(fen, 0, fen.lastIndexOf(' ', fen.lastIndexOf(' ') - 1));
+                    for (int i = positionEnd; i < end; i++) {
+                        valid.append((char) (buffer.get(i) & 0xFF));
+                    }
+                    valid.append('\n');
+                    validLines++;
+                    return;
+                }
+            }
+
+            reject(buffer, start, end, error.getMessage());
+        }
+
+        private void reject(ByteBuffer buffer, int start, int end, String reason) {
+            for (int i = start; i < end; i++) {
+                rejected.append((char) (buffer.get(i) & 0xFF));
+            }
+            rejected.append('\t').append(reason).append('\n');
+            rejectedLines++;
+        }
+    }
+
+    // First four sections of an EPD line with zero counters appended, read as a FEN
+    private static class EPDPosition implements CharSequence {
+        private static final String COUNTERS = " 0 1";
+
+        private ByteBuffer buffer;
+        private int start;
+        private int length;
+
+        // Returns the end of the position sections or -1 if the line doesn't look like EPD:
+        // less than four sections or something but operations ended with semicolons after them
+        int wrap(ByteBuffer buffer, int start, int end) {
+            int sections = 0;
+            int i = start;
+            while (sections < 4 && i <= end) {
+                if (i == end || buffer.get(i) == ' ') {
+                    sections++;
+                }
+                i++;
+            }
+            if (sections < 4 || i <= end && buffer.get(end - 1) != ';') {
+                return -1;
+            }
+
+            this.buffer = buffer;
+            this.start = start;
+            this.length = i - 1 - start;
+            return i - 1;
+        }
+
+        @Override
+        public int length() {
+            return length + COUNTERS.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return index < length ? (char) (buffer.get(start + index) & 0xFF) : COUNTERS.charAt(index - length);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder stringBuilder = new StringBuilder(length());
+            for (int i = 0; i < length(); i++) {
+                stringBuilder.append(charAt(i));
+            }
+            return stringBuilder.toString();
+        }
+    }
+}
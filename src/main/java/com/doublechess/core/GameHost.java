@@ -0,0 +1,188 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Hosts many concurrent games by id. Actions on a game are queued in its mailbox and applied one by one
+// in the order they were submitted, so boards need no locks. Mailboxes with pending actions take turns
+// on a small shared executor instead of having a thread each.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class GameHost implements AutoCloseable {
+    // Actions applied in one go before the game gives the thread to other ones
+    private static final int MAILBOX_BATCH_SIZE = 64;
+    private static final int BOARD_POOL_SIZE = 1024;
+
+    private final Executor executor;
+    private final ExecutorService ownExecutor;
+    private final ConcurrentHashMap<String, Game> games = new ConcurrentHashMap<>();
+    private final BoardPool boards;
+    private ClockService clock;
+
+    public GameHost() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public GameHost(int threads) {
+        this(new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), true);
+    }
+
+    // The executor isn't shut down when the host is closed
+    public GameHost(Executor executor) {
+        this(executor, false);
+    }
+
+    private GameHost(Executor executor, boolean own) {
+        this.executor = executor;
+        this.ownExecutor = own ? (ExecutorService) executor : null;
+        this.boards = new BoardPool(BOARD_POOL_SIZE);
+    }
+
+    // Boards of games created after this get the clock, the players to move are flagged on time
+    // through the game mailboxes
+    public void setClock(ClockService clock) {
+        this.clock = clock;
+    }
+
+    public void createGame(String gameId) throws FENFormatException {
+        createGame(gameId, Board.START_FEN, 0, 0, 0);
+    }
+
+    public void createGame(String gameId, String fen, long whiteTime, long blackTime, long increment)
+            throws FENFormatException {
+        Board board = boards.acquire(fen, whiteTime, blackTime, increment);
+        // Snapshots are read by other threads without waiting for the mailbox
+        board.setPublishingSnapshots(true);
+        Game game = new Game(board);
+        board.setClock(clock, clock != null ? () -> game.enqueue(Board::checkTime) : null);
+        if (games.putIfAbsent(gameId, game) != null) {
+            board.setClock(null, null);
+            boards.release(board);
+            throw new IllegalArgumentException("Game " + gameId + " already exists");
+        }
+    }
+
+    // Completes with the game result after the move, or exceptionally if the move is illegal
+    public CompletableFuture<GameResult> move(String gameId, String san) {
+        return submit(gameId, board -> {
+            board.move(san);
+            return board.getGameResult();
+        });
+    }
+
+    public CompletableFuture<GameResult> move(String gameId, int from, int to, PromotionPiece promotionPiece) {
+        return submit(gameId, board -> {
+            board.move(from, to, promotionPiece);
+            return board.getGameResult();
+        });
+    }
+
+    // Runs the action on the game board after all the actions submitted before it
+    public <T> CompletableFuture<T> submit(String gameId, GameAction<T> action) {
+        Game game = games.get(gameId);
+        if (game == null) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException("There is no game " + gameId));
+            return future;
+        }
+        return game.enqueue(action);
+    }
+
+    // Latest position of the game, read without waiting for the mailbox
+    public Position snapshot(String gameId) {
+        Game game = games.get(gameId);
+        return game != null ? game.board.snapshot() : null;
+    }
+
+    // Removes the game after its pending actions, completes with the final result. The board goes back
+    // to the pool, actions submitted later fail.
+    public CompletableFuture<GameResult> removeGame(String gameId) {
+        Game game = games.remove(gameId);
+        if (game == null) {
+            CompletableFuture<GameResult> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException("There is no game " + gameId));
+            return future;
+        }
+        return game.enqueue(board -> {
+            game.removed = true;
+            GameResult result = board.getGameResult();
+            board.setClock(null, null);
+            boards.release(board);
+            return result;
+        });
+    }
+
+    public int getGameCount() {
+        return games.size();
+    }
+
+    @Override
+    public void close() {
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    public interface GameAction<T> {
+        T apply(Board board) throws Exception;
+    }
+
+    private class Game implements Runnable {
+        private final Board board;
+        private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Changed and read only by the actions
+        private boolean removed;
+
+        Game(Board board) {
+            this.board = board;
+        }
+
+        <T> CompletableFuture<T> enqueue(GameAction<T> action) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            mailbox.add(() -> {
+                if (removed) {
+                    future.completeExceptionally(new IllegalStateException("Game is removed"));
+                    return;
+                }
+                try {
+                    future.complete(action.apply(board));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            schedule();
+            return future;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < MAILBOX_BATCH_SIZE; i++) {
+                Runnable action = mailbox.poll();
+                if (action == null) {
+                    break;
+                }
+                action.run();
+            }
+
+            // Action added meanwhile may have seen the flag still set
+            scheduled.set(false);
+            if (!mailbox.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
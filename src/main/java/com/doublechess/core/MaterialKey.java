@@ -0,0 +1,179 @@
+package com.doublechess.core;
+
+import com.doublechess.core.piece.Piece;
+
+// Material of a position packed into a long: counts of pawns, knights, light-squared bishops, dark-squared
+// bishops, rooks and queens of white in 4 bits each from bit 0, the same for black from bit 24. Positions
+// keep the key up to date as pieces are put and removed, so questions about the material are answered by
+// table lookups on it. Keys of equal material are equal, which makes them good buckets for statistics.
+// Counts saturate at 15, which stands for 15 or more: a position set up from FEN may have any number of
+// pieces of a kind, and saturated keys never match a known draw.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class MaterialKey {
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int LIGHT_BISHOP = 2;
+    public static final int DARK_BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+
+    private static final int SIDE_BITS = 24;
+    private static final long SIDE_MASK = (1L << SIDE_BITS) - 1;
+    // Pawns, rooks and queens of one side
+    private static final long MAJORS_AND_PAWNS = 0xff000fL;
+    private static final char[] PIECE_LETTERS = {'P', 'N', 'B', 'B', 'R', 'Q'};
+    private static final int[] PHASES = {0, 1, 1, 1, 2, 4};
+    private static final int ENDGAME_PHASE = 12;
+
+    // Key change of a piece put on a square, indexed by piece code (type | color << 3) and square
+    static final long[] UNITS = new long[16 * 64];
+    // Whether the knights and bishops of a side can't mate, indexed by their 12 bits of the side key
+    private static final boolean[] INSUFFICIENT_MINORS = new boolean[1 << 12];
+    // Endgame classes by whether there are minor pieces, rooks and queens
+    private static final EndgameClass[] ENDGAME_CLASSES = {
+            EndgameClass.PAWN, EndgameClass.MINOR_PIECE, EndgameClass.ROOK, EndgameClass.MIXED,
+            EndgameClass.QUEEN, EndgameClass.MIXED, EndgameClass.MIXED, EndgameClass.MIXED};
+    // Open addressing set of pawnless keys known to be drawn with correct play
+    private static final long[] KNOWN_DRAWS = new long[256];
+
+    static {
+        for (int color = BitboardPosition.WHITE; color <= BitboardPosition.BLACK; color++) {
+            for (int type = Piece.PAWN; type < Piece.KING; type++) {
+                for (int square = 0; square < 64; square++) {
+                    int field = type <= Piece.KNIGHT ? type : type == Piece.BISHOP ?
+                            ((BitboardPosition.LIGHT_SQUARES >>> square & 1) != 0 ? LIGHT_BISHOP : DARK_BISHOP) : type + 1;
+                    UNITS[(type | color << 3) << 6 | square] = 1L << (color * SIDE_BITS + field * 4);
+                }
+            }
+        }
+
+        for (int minors = 0; minors < INSUFFICIENT_MINORS.length; minors++) {
+            int knights = minors & 15;
+            int lightBishops = minors >>> 4 & 15;
+            int darkBishops = minors >>> 8 & 15;
+            // Bishops of one square color alone, or up to two knights alone can't force a mate
+            INSUFFICIENT_MINORS[minors] = knights == 0 && (lightBishops == 0 || darkBishops == 0) ||
+                    knights < 3 && lightBishops == 0 && darkBishops == 0;
+        }
+
+        String[] draws = {"KNvK", "KBvK", "KNNvK", "KNvKN", "KNvKB", "KBvKB", "KBBvKB", "KBNvKB", "KBNvKN",
+                "KNNvKN", "KNNvKB", "KRvKR", "KRvKN", "KRvKB", "KRNvKR", "KRBvKR", "KQvKQ", "KQNvKQ", "KQBvKQ"};
+        for (String draw : draws) {
+            // Every square color of the bishops, either side may be white
+            int bishops = draw.replaceAll("[^B]", "").length();
+            for (int colors = 0; colors < 1 << bishops; colors++) {
+                long key = parse(draw, colors);
+                addKnownDraw(key);
+                addKnownDraw(key >>> SIDE_BITS | (key & SIDE_MASK) << SIDE_BITS);
+            }
+        }
+    }
+
+    private MaterialKey() {
+    }
+
+    // Signature like "KRPPvKR", white pieces first, bishops stand on light squares
+    public static long of(String signature) {
+        return parse(signature, 0);
+    }
+
+    // 15 means 15 or more
+    public static int count(long key, boolean white, int field) {
+        return (int) (key >>> ((white ? 0 : SIDE_BITS) + field * 4) & 15);
+    }
+
+    // Whether the side has no pawns, rooks or queens, and its minor pieces can't mate
+    public static boolean isInsufficient(long key, boolean white) {
+        long side = white ? key & SIDE_MASK : key >>> SIDE_BITS;
+        return (side & MAJORS_AND_PAWNS) == 0 && INSUFFICIENT_MINORS[(int) (side >>> 4 & 0xfff)];
+    }
+
+    // Neither side can mate, or the material is a well known draw like rook against rook
+    public static boolean isKnownDraw(long key) {
+        if (isInsufficient(key, true) && isInsufficient(key, false)) {
+            return true;
+        }
+        for (int i = knownDrawIndex(key); KNOWN_DRAWS[i] != 0; i = (i + 1) & (KNOWN_DRAWS.length - 1)) {
+            if (KNOWN_DRAWS[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static EndgameClass getEndgameClass(long key) {
+        int phase = 0;
+        for (int field = KNIGHT; field <= QUEEN; field++) {
+            phase += PHASES[field] * (count(key, true, field) + count(key, false, field));
+        }
+        if (phase > ENDGAME_PHASE) {
+            return EndgameClass.MIDDLEGAME;
+        }
+        long both = key | key >>> SIDE_BITS;
+        int kinds = ((both & 0xfff0L) != 0 ? 1 : 0) | ((both & 0xf0000L) != 0 ? 2 : 0) | ((both & 0xf00000L) != 0 ? 4 : 0);
+        return ENDGAME_CLASSES[kinds];
+    }
+
+    // Signature of the key, like "KRPPvKR"
+    public static String toString(long key) {
+        StringBuilder builder = new StringBuilder(16);
+        for (int color = BitboardPosition.WHITE; color <= BitboardPosition.BLACK; color++) {
+            builder.append(color == BitboardPosition.WHITE ? "K" : "vK");
+            for (int field = QUEEN; field >= PAWN; field--) {
+                for (int i = count(key, color == BitboardPosition.WHITE, field); i > 0; i--) {
+                    builder.append(PIECE_LETTERS[field]);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    // Whether the field of the unit is saturated, so it can't take one more piece
+    static boolean isSaturated(long key, long unit) {
+        long full = unit * 15;
+        return unit != 0 && (key & full) == full;
+    }
+
+    // Bits of bishopColors tell which bishops in the order of the signature stand on dark squares
+    private static long parse(String signature, int bishopColors) {
+        int separator = signature.indexOf('v');
+        if (separator == -1 || signature.length() < 3 || signature.charAt(0) != 'K' ||
+                signature.charAt(separator + 1) != 'K' || signature.indexOf('v', separator + 1) != -1) {
+            throw new IllegalArgumentException("Bad material signature " + signature);
+        }
+
+        long key = 0;
+        int bishop = 0;
+        for (int i = 1; i < signature.length(); i++) {
+            if (i == separator || i == separator + 1) {
+                continue;
+            }
+            int field = "PNBRQ".indexOf(signature.charAt(i));
+            if (field == -1) {
+                throw new IllegalArgumentException("Bad material signature " + signature);
+            }
+            if (field >= LIGHT_BISHOP) {
+                field = field != LIGHT_BISHOP ? field + 1 : (bishopColors >>> bishop++ & 1) != 0 ? DARK_BISHOP : LIGHT_BISHOP;
+            }
+            int shift = (i < separator ? 0 : SIDE_BITS) + field * 4;
+            if ((key >>> shift & 15) == 15) {
+                throw new IllegalArgumentException("Bad material signature " + signature);
+            }
+            key += 1L << shift;
+        }
+        return key;
+    }
+
+    private static void addKnownDraw(long key) {
+        int i = knownDrawIndex(key);
+        while (KNOWN_DRAWS[i] != 0 && KNOWN_DRAWS[i] != key) {
+            i = (i + 1) & (KNOWN_DRAWS.length - 1);
+        }
+        KNOWN_DRAWS[i] = key;
+    }
+
+    private static int knownDrawIndex(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 56) & (KNOWN_DRAWS.length - 1);
+    }
+}
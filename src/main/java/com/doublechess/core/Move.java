@@ -5,6 +5,9 @@ import com.doublechess.core.piece.*;
 import static com.doublechess.core.CoreUtils.*;
 
 public class Move {
+    // Promotion piece types in order of PromotionPiece constants
+    private static final int[] PROMOTION_TYPES = {Piece.QUEEN, Piece.KNIGHT, Piece.ROOK, Piece.BISHOP};
+
     private int from;
     private int to;
     private Piece piece;
@@ -18,7 +21,14 @@ public class Move {
     private boolean lastMove;
     private boolean fromFileExcess;
     private boolean fromRankExcess;
+    // Built on the first request and cached until something it depends on changes
     private String algebraic;
+    // Position the move was generated in, check flags are worked out from it on demand
+    private BitboardPosition origin;
+    private int code;
+    // Move cache entry of that position and index of the move in it, flags and notation are shared through it
+    private MoveCache.Entry cacheEntry;
+    private int cacheIndex;
 
     public Move(int from, int to, Piece piece, Piece capturedPiece,
                 boolean firstPieceMove, boolean enpassant, boolean castling) {
@@ -29,19 +39,9 @@ public class Move {
         this.firstPieceMove = firstPieceMove;
         this.enpassant = enpassant;
         this.castling = castling;
-        algebraic = String.format("%s -> %s", positionToAlgebraic(from), positionToAlgebraic(to));
-
-        if (piece instanceof Pawn && positionToRank(to) == (piece.isWhite() ? 7 : 0)) {
-            promotionMoves = new Move[]{
-                    new Move(from, to, piece, capturedPiece, Queen.class),
-                    new Move(from, to, piece, capturedPiece, Knight.class),
-                    new Move(from, to, piece, capturedPiece, Rook.class),
-                    new Move(from, to, piece, capturedPiece, Bishop.class)
-            };
-        }
     }
 
-    private Move(int from, int to, Piece piece, Piece capturedPiece, Class<? extends Piece> promotionPieceClass) {
+    Move(int from, int to, Piece piece, Piece capturedPiece, Class<? extends Piece> promotionPieceClass) {
         this.from = from;
         this.to = to;
         this.piece = piece;
@@ -82,23 +82,39 @@ public class Move {
     }
 
     public Move[] getPromotionMoves() {
+        // Promotion moves are only built when somebody asks for them
+        if (promotionMoves == null && promotionPieceClass == null &&
+                piece instanceof Pawn && positionToRank(to) == (piece.isWhite() ? 7 : 0)) {
+            promotionMoves = new Move[PROMOTION_TYPES.length];
+            for (int i = 0; i < promotionMoves.length; i++) {
+                promotionMoves[i] = new Move(from, to, piece, capturedPiece, promotionPieceClass(PROMOTION_TYPES[i]));
+            }
+        }
         return promotionMoves;
     }
 
     public boolean isCheck() {
+        resolveFlags();
         return check;
     }
 
     public void setCheck(boolean check) {
+        resolveFlags();
+        cacheEntry = null;
         this.check = check;
+        algebraic = null;
     }
 
     public boolean isLastMove() {
+        resolveFlags();
         return lastMove;
     }
 
     public void setLastMove(boolean lastMove) {
+        resolveFlags();
+        cacheEntry = null;
         this.lastMove = lastMove;
+        algebraic = null;
     }
 
     public boolean isFromFileExcess() {
@@ -107,6 +123,8 @@ public class Move {
 
     public void setFromFileExcess(boolean fromFileExcess) {
         this.fromFileExcess = fromFileExcess;
+        cacheEntry = null;
+        algebraic = null;
     }
 
     public boolean isFromRankExcess() {
@@ -115,62 +133,131 @@ public class Move {
 
     public void setFromRankExcess(boolean fromRankExcess) {
         this.fromRankExcess = fromRankExcess;
+        cacheEntry = null;
+        algebraic = null;
     }
 
     public String getAlgebraic() {
+        if (algebraic == null) {
+            algebraic = buildAlgebraic();
+            if (cacheEntry != null) {
+                cacheEntry.setAlgebraic(cacheIndex, algebraic);
+            }
+        }
         return algebraic;
     }
 
     public void updateAlgebraic() {
-        // Build algebraic
-        StringBuilder stringBuilder = new StringBuilder();
-
-        if (!castling) {
-            // Moving piece code square
-            if (!(piece instanceof Pawn)) {
-                stringBuilder.append(Character.toUpperCase(pieceClassToChar(piece.getClass())));
-            }
+        // Algebraic is rebuilt lazily on the next request
+        cacheEntry = null;
+        algebraic = null;
+    }
 
-            // Departure square
-            if (!(piece instanceof Pawn && capturedPiece == null)) {
-                if (!fromFileExcess) {
-                    stringBuilder.append(positionToFileChar(from));
-                }
-                if (!fromRankExcess) {
-                    stringBuilder.append(positionToRank(from) + 1);
-                }
-            }
+    private String buildAlgebraic() {
+        if (castling) {
+            // Check sign is the only suffix, so the notation itself can be shared
+            String notation = to > from ? "O-O" : "O-O-O";
+            return isCheck() ? notation + (isLastMove() ? '#' : '+') : notation;
+        }
 
-            // Capture
-            if (capturedPiece != null) {
-                stringBuilder.append('x');
-            }
+        // Longest notation is like "Qa1xb2+" or "axb8=Q#"
+        StringBuilder stringBuilder = new StringBuilder(8);
+        boolean pawn = piece instanceof Pawn;
 
-            // Arrival square
-            stringBuilder.append(positionToFileChar(to)).append(positionToRank(to) + 1);
+        // Moving piece code square
+        if (!pawn) {
+            stringBuilder.append(pieceTypeToUpperChar(piece.getType()));
+        }
 
-            // Promotion
-            if (promotionPieceClass != null) {
-                stringBuilder.append('=').append(Character.toUpperCase(pieceClassToChar(promotionPieceClass)));
+        // Departure square
+        if (!(pawn && capturedPiece == null)) {
+            if (!fromFileExcess) {
+                stringBuilder.append(positionToFileChar(from));
             }
-        } else {
-            if (to > from) {
-                stringBuilder.append("O-O");
-            } else {
-                stringBuilder.append("O-O-O");
+            if (!fromRankExcess) {
+                stringBuilder.append(positionToRankChar(from));
             }
         }
 
-        // Check or checkmate
-        if (check) {
-            stringBuilder.append(lastMove ? '#' : '+');
+        // Capture
+        if (capturedPiece != null) {
+            stringBuilder.append('x');
+        }
+
+        // Arrival square
+        stringBuilder.append(positionToAlgebraic(to));
+
+        // Promotion
+        if (promotionPieceClass != null) {
+            stringBuilder.append('=').append(Character.toUpperCase(pieceClassToChar(promotionPieceClass)));
+        }
+
+        // Check or checkmate sign is worked out only now
+        if (isCheck()) {
+            stringBuilder.append(isLastMove() ? '#' : '+');
+        }
+
+        return stringBuilder.toString();
+    }
+
+    static Class<? extends Piece> promotionPieceClass(int type) {
+        switch (type) {
+            case Piece.KNIGHT:
+                return Knight.class;
+            case Piece.ROOK:
+                return Rook.class;
+            case Piece.BISHOP:
+                return Bishop.class;
+            default:
+                return Queen.class;
+        }
+    }
+
+    void setFlags(boolean check, boolean lastMove) {
+        origin = null;
+        this.check = check;
+        this.lastMove = lastMove;
+        algebraic = null;
+        if (cacheEntry != null) {
+            cacheEntry.setFlags(cacheIndex, (check ? BitboardPosition.CHECK : 0) | (lastMove ? BitboardPosition.LAST_MOVE : 0));
         }
+    }
 
-        algebraic = stringBuilder.toString();
+    // Lets the flags be worked out later from the position the move was generated in
+    void setOrigin(BitboardPosition origin, int code) {
+        this.origin = origin;
+        this.code = code;
+    }
+
+    boolean isFlagsResolved() {
+        return origin == null;
+    }
+
+    // Takes the flags and notation already worked out by any board, the rest is stored there once known
+    void setCacheSlot(MoveCache.Entry entry, int index) {
+        int flags = entry.getFlags(index);
+        if (flags != -1) {
+            setFlags((flags & BitboardPosition.CHECK) != 0, (flags & BitboardPosition.LAST_MOVE) != 0);
+            algebraic = entry.getAlgebraic(index);
+        }
+        cacheEntry = entry;
+        cacheIndex = index;
+    }
+
+    void resolveFlags() {
+        if (origin != null) {
+            int flags = origin.moveFlags(code);
+            if (cacheEntry != null) {
+                cacheEntry.setFlags(cacheIndex, flags);
+            }
+            check = (flags & BitboardPosition.CHECK) != 0;
+            lastMove = (flags & BitboardPosition.LAST_MOVE) != 0;
+            origin = null;
+        }
     }
 
     @Override
     public String toString() {
-        return algebraic;
+        return getAlgebraic();
     }
 }
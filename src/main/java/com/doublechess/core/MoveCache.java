@@ -0,0 +1,147 @@
+package com.doublechess.core;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded cache of legal moves by position, shared between boards of any threads with Board.setMoveCache.
+// Positions met in many games, like openings, get their moves generated once. Check flags and notation of the
+// moves are shared too: the first board to work them out stores them in the entry for the others. The cache
+// is direct mapped by position hash: a new position replaces the one in its slot. Entries keep the whole
+// position, so hash collisions never give wrong moves.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class MoveCache {
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Capacity is rounded up to a power of two
+    public MoveCache(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        entries = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Count of cached positions replaced by other ones
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hits = getHits();
+        return hits / (double) Math.max(1, hits + getMisses());
+    }
+
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    // Entry of the position or null if it isn't cached
+    Entry get(BitboardPosition position) {
+        Entry entry = entries.get((int) position.hash & mask);
+        if (entry != null && entry.matches(position)) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    Entry put(BitboardPosition position, int[] moves, int count) {
+        Entry entry = new Entry(position, moves, count);
+        Entry previous = entries.getAndSet((int) position.hash & mask, entry);
+        if (previous != null && !previous.matches(position)) {
+            evictions.increment();
+        }
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses, %d evictions (%.1f%% hit rate)",
+                getHits(), getMisses(), getEvictions(), getHitRate() * 100);
+    }
+
+    // Position and its moves are immutable, so they're safely shared once read from the array. Flags and
+    // notation by move index are filled in later without locks: every board writes the same values, and
+    // bytes and immutable strings can't be seen half written.
+    static final class Entry {
+        private static final byte RESOLVED = 4;
+
+        private final long hash;
+        private final long[] pieces = new long[8];
+        private final int state;
+        // Legal move codes, must not be changed
+        final int[] moves;
+        private final byte[] flags;
+        private final String[] algebraic;
+
+        Entry(BitboardPosition position, int[] moves, int count) {
+            hash = position.hash;
+            System.arraycopy(position.colors, 0, pieces, 0, 2);
+            System.arraycopy(position.types, 0, pieces, 2, 6);
+            state = state(position);
+            this.moves = new int[count];
+            System.arraycopy(moves, 0, this.moves, 0, count);
+            flags = new byte[count];
+            algebraic = new String[count];
+        }
+
+        // BitboardPosition.moveFlags of the move or -1 if nobody worked them out yet
+        int getFlags(int index) {
+            int value = flags[index];
+            return value != 0 ? value & ~RESOLVED : -1;
+        }
+
+        void setFlags(int index, int value) {
+            flags[index] = (byte) (value | RESOLVED);
+        }
+
+        String getAlgebraic(int index) {
+            return algebraic[index];
+        }
+
+        void setAlgebraic(int index, String value) {
+            algebraic[index] = value;
+        }
+
+        boolean matches(BitboardPosition position) {
+            if (hash != position.hash || state != state(position)) {
+                return false;
+            }
+            for (int i = 0; i < 2; i++) {
+                if (pieces[i] != position.colors[i]) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < 6; i++) {
+                if (pieces[i + 2] != position.types[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int state(BitboardPosition position) {
+            return position.sideToMove | position.castling << 1 | (position.enpassantSquare + 1) << 5;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.doublechess.core;
+
+// Move packed into a single int: departure square in bits 0-5, arrival square in bits 6-11,
+// promotion piece type in bits 12-14 (0 means no promotion) and special move flags above.
+final class MoveCode {
+    static final int ENPASSANT = 1 << 15;
+    static final int CASTLING = 1 << 16;
+    static final int DOUBLE_STEP = 1 << 17;
+
+    private MoveCode() {
+    }
+
+    static int of(int from, int to) {
+        return from | to << 6;
+    }
+
+    static int of(int from, int to, int flags) {
+        return from | to << 6 | flags;
+    }
+
+    static int promotion(int from, int to, int promotionType) {
+        return from | to << 6 | promotionType << 12;
+    }
+
+    static int from(int move) {
+        return move & 63;
+    }
+
+    static int to(int move) {
+        return move >>> 6 & 63;
+    }
+
+    static int promotionType(int move) {
+        return move >>> 12 & 7;
+    }
+
+    static boolean isPromotion(int move) {
+        return (move & 7 << 12) != 0;
+    }
+
+    static boolean isEnpassant(int move) {
+        return (move & ENPASSANT) != 0;
+    }
+
+    static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    static boolean isDoubleStep(int move) {
+        return (move & DOUBLE_STEP) != 0;
+    }
+
+    // Coordinate notation like "e2e4" or "e7e8q"
+    static String toCoordinates(int move) {
+        String coordinates = CoreUtils.positionToAlgebraic(from(move)) + CoreUtils.positionToAlgebraic(to(move));
+        return isPromotion(move) ? coordinates + CoreUtils.pieceTypeToChar(promotionType(move)) : coordinates;
+    }
+}
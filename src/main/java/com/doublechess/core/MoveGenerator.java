@@ -0,0 +1,194 @@
+package com.doublechess.core;
+
+import com.doublechess.core.piece.Piece;
+
+// Strictly legal move generator. Checkers, pinned pieces and the evasion mask are computed once
+// per position, so no move has to be tried on the board to see if it leaves the king in check.
+final class MoveGenerator {
+    // Upper bound of legal moves count in any reachable position
+    static final int MAX_MOVES = 256;
+
+    private final BitboardPosition position;
+    private final int[] scratch = new int[MAX_MOVES];
+
+    // Output buffer of the current generation
+    private int[] moves;
+    private int count;
+
+    // Per-position data
+    private int us;
+    private int them;
+    private int king;
+    private long own;
+    private long enemy;
+    private long occupied;
+    private long checkers;
+    private long pinned;
+    private long targetMask;
+
+    MoveGenerator(BitboardPosition position) {
+        this.position = position;
+    }
+
+    // Fills the buffer with legal moves of the side to move and returns their count
+    int generate(int[] moves) {
+        this.moves = moves;
+        count = 0;
+
+        us = position.sideToMove;
+        them = us ^ 1;
+        own = position.colors[us];
+        enemy = position.colors[them];
+        occupied = position.occupied;
+        king = position.kingSquare(us);
+        checkers = position.attackersTo(king, them, occupied);
+        pinned = findPinned();
+
+        generateKingMoves();
+
+        if ((checkers & checkers - 1) != 0) {
+            // Only the king can get out of double check
+            return count;
+        }
+
+        // If in check, other pieces have to capture the checker or step in between
+        targetMask = checkers == 0 ? ~own : checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+
+        generatePawnMoves();
+        for (int type = Piece.KNIGHT; type <= Piece.QUEEN; type++) {
+            generatePieceMoves(type);
+        }
+
+        if (checkers == 0) {
+            generateCastling();
+        }
+
+        return count;
+    }
+
+    boolean hasLegalMove() {
+        return generate(scratch) > 0;
+    }
+
+    private long findPinned() {
+        // Enemy sliders which would attack the king if our pieces weren't in the way
+        long queens = position.types[Piece.QUEEN];
+        long snipers = enemy & (Attacks.rook(king, enemy) & (position.types[Piece.ROOK] | queens) |
+                Attacks.bishop(king, enemy) & (position.types[Piece.BISHOP] | queens));
+
+        long result = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            // Single piece of ours between the king and the sniper is pinned
+            if (blockers != 0 && (blockers & blockers - 1) == 0 && (blockers & own) != 0) {
+                result |= blockers;
+            }
+        }
+        return result;
+    }
+
+    private void generateKingMoves() {
+        // King doesn't shelter the squares behind it from sliders
+        long occupiedWithoutKing = occupied ^ 1L << king;
+        for (long targets = Attacks.king(king) & ~own; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            if (position.attackersTo(to, them, occupiedWithoutKing) == 0) {
+                moves[count++] = MoveCode.of(king, to);
+            }
+        }
+    }
+
+    private void generatePieceMoves(int type) {
+        for (long pieces = position.pieces(us, type); pieces != 0; pieces &= pieces - 1) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            long targets = Attacks.piece(type, from, occupied) & targetMask & pinMask(from);
+            for (; targets != 0; targets &= targets - 1) {
+                moves[count++] = MoveCode.of(from, Long.numberOfTrailingZeros(targets));
+            }
+        }
+    }
+
+    private void generatePawnMoves() {
+        int forward = us == BitboardPosition.WHITE ? 8 : -8;
+        long startRank = us == BitboardPosition.WHITE ? BitboardPosition.RANK_2 : BitboardPosition.RANK_7;
+
+        for (long pawns = position.pieces(us, Piece.PAWN); pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long allowed = targetMask & pinMask(from);
+
+            // Steps forward
+            int to = from + forward;
+            if (position.isEmpty(to)) {
+                if ((allowed & 1L << to) != 0) {
+                    addPawnMove(from, to);
+                }
+                int doubleStepTo = to + forward;
+                if ((startRank & 1L << from) != 0 && position.isEmpty(doubleStepTo) && (allowed & 1L << doubleStepTo) != 0) {
+                    moves[count++] = MoveCode.of(from, doubleStepTo, MoveCode.DOUBLE_STEP);
+                }
+            }
+
+            // Captures
+            for (long targets = Attacks.pawn(us, from) & enemy & allowed; targets != 0; targets &= targets - 1) {
+                addPawnMove(from, Long.numberOfTrailingZeros(targets));
+            }
+
+            // Enpassant
+            int enpassantSquare = position.enpassantSquare;
+            if (enpassantSquare != -1 && (Attacks.pawn(us, from) & 1L << enpassantSquare) != 0) {
+                addEnpassant(from, enpassantSquare, enpassantSquare - forward);
+            }
+        }
+    }
+
+    private void addPawnMove(int from, int to) {
+        if (to >= 56 || to < 8) {
+            // Same order as PromotionPiece constants
+            moves[count++] = MoveCode.promotion(from, to, Piece.QUEEN);
+            moves[count++] = MoveCode.promotion(from, to, Piece.KNIGHT);
+            moves[count++] = MoveCode.promotion(from, to, Piece.ROOK);
+            moves[count++] = MoveCode.promotion(from, to, Piece.BISHOP);
+        } else {
+            moves[count++] = MoveCode.of(from, to);
+        }
+    }
+
+    private void addEnpassant(int from, int to, int capturedSquare) {
+        if ((position.pieces(them, Piece.PAWN) & 1L << capturedSquare) == 0 || !position.isEmpty(to)) {
+            return;
+        }
+
+        // Two pawns leave the same rank at once, so just look at the king after the capture
+        long occupiedAfter = occupied ^ 1L << from ^ 1L << capturedSquare | 1L << to;
+        if ((position.attackersTo(king, them, occupiedAfter) & ~(1L << capturedSquare)) == 0) {
+            moves[count++] = MoveCode.of(from, to, MoveCode.ENPASSANT);
+        }
+    }
+
+    private void generateCastling() {
+        int base = us == BitboardPosition.WHITE ? 0 : 56;
+        int kingsideRight = us == BitboardPosition.WHITE ? BitboardPosition.WHITE_KINGSIDE : BitboardPosition.BLACK_KINGSIDE;
+        int queensideRight = us == BitboardPosition.WHITE ? BitboardPosition.WHITE_QUEENSIDE : BitboardPosition.BLACK_QUEENSIDE;
+        long rooks = position.pieces(us, Piece.ROOK);
+
+        if (king != base + 4) {
+            return;
+        }
+
+        if ((position.castling & kingsideRight) != 0 && (rooks & 1L << (base + 7)) != 0 &&
+                (occupied & (3L << (base + 5))) == 0 &&
+                !position.isAttacked(base + 5, them) && !position.isAttacked(base + 6, them)) {
+            moves[count++] = MoveCode.of(king, base + 6, MoveCode.CASTLING);
+        }
+
+        if ((position.castling & queensideRight) != 0 && (rooks & 1L << base) != 0 &&
+                (occupied & (7L << (base + 1))) == 0 &&
+                !position.isAttacked(base + 3, them) && !position.isAttacked(base + 2, them)) {
+            moves[count++] = MoveCode.of(king, base + 2, MoveCode.CASTLING);
+        }
+    }
+
+    private long pinMask(int from) {
+        return (pinned & 1L << from) == 0 ? -1L : Attacks.line(king, from);
+    }
+}
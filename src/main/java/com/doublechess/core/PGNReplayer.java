@@ -0,0 +1,488 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Replays PGN databases through boards to validate them or to extract positions. The input is read from a channel
+// into large chunks and only split into games on the reading thread. Batches of games are tokenised straight from
+// the chunks and replayed in parallel, each worker reusing its board. SAN moves are resolved against the legal
+// moves without building Move objects.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class PGNReplayer {
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final int threads;
+    private final int batchSize;
+    private final int chunkSize;
+    private MoveCache moveCache;
+
+    public PGNReplayer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PGNReplayer(int threads) {
+        this(threads, DEFAULT_BATCH_SIZE, CHUNK_SIZE);
+    }
+
+    PGNReplayer(int threads, int batchSize, int chunkSize) {
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    // Optional cache shared by the worker boards, databases have lots of common positions in openings
+    public void setMoveCache(MoveCache moveCache) {
+        this.moveCache = moveCache;
+    }
+
+    public Report replay(Path input) throws IOException {
+        return replay(input, null);
+    }
+
+    public Report replay(Path input, PositionListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            return replay(channel, listener);
+        }
+    }
+
+    // Listener is called from the worker threads, games are replayed in no particular order
+    public Report replay(ReadableByteChannel input, PositionListener listener) throws IOException {
+        long startTime = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        BoardPool boards = new BoardPool(threads);
+        Report report = new Report();
+
+        // Results are collected in the input order, a few batches ahead are replayed meanwhile
+        ArrayDeque<Future<Batch>> pending = new ArrayDeque<>();
+        // Games are slices of the chunk they were read into, a full chunk is left to the batches using it
+        byte[] chunk = new byte[chunkSize];
+        int chunkLength = 0;
+        int gameStart = 0;
+        long games = 0;
+        Batch batch = new Batch(1, batchSize, boards, moveCache, listener);
+        // Splitting state: a tag line after some movetext, or after a blank line ending the tags, starts the next game
+        boolean lineStart = true;
+        boolean tagLine = false;
+        boolean lineComment = false;
+        boolean braceComment = false;
+        boolean tags = false;
+        boolean tagsEnded = false;
+        boolean movetext = false;
+
+        try {
+            while (true) {
+                int read = input.read(ByteBuffer.wrap(chunk, chunkLength, chunk.length - chunkLength));
+                if (read == -1) {
+                    break;
+                }
+                report.bytes += read;
+
+                for (int i = chunkLength; i < chunkLength + read; i++) {
+                    byte c = chunk[i];
+                    if (c == '\n') {
+                        if (lineStart && tags && !braceComment) {
+                            tagsEnded = true;
+                        }
+                        lineStart = true;
+                        lineComment = false;
+                    } else if (lineStart && c > ' ') {
+                        lineStart = false;
+                        tagLine = false;
+                        if (!braceComment && c == '[') {
+                            tagLine = true;
+                            if (movetext || tagsEnded) {
+                                batch.add(chunk, gameStart, i - gameStart);
+                                gameStart = i;
+                                games++;
+                                movetext = false;
+                                tagsEnded = false;
+                                if (batch.count == batchSize) {
+                                    submit(executor, pending, batch, report);
+                                    batch = new Batch(games + 1, batchSize, boards, moveCache, listener);
+                                }
+                            }
+                            tags = true;
+                        } else if (!braceComment && c == '%') {
+                            lineComment = true;
+                        } else {
+                            movetext = true;
+                        }
+                    }
+                    if (!tagLine && !lineComment) {
+                        if (c == '{') {
+                            braceComment = true;
+                        } else if (c == '}') {
+                            braceComment = false;
+                        } else if (c == ';' && !braceComment) {
+                            lineComment = true;
+                        }
+                    }
+                }
+                chunkLength += read;
+
+                if (chunkLength == chunk.length) {
+                    // Unfinished game goes on in a new chunk
+                    int carried = chunkLength - gameStart;
+                    byte[] next = new byte[Math.max(chunkSize, carried * 2)];
+                    System.arraycopy(chunk, gameStart, next, 0, carried);
+                    chunk = next;
+                    chunkLength = carried;
+                    gameStart = 0;
+                }
+            }
+
+            // The last game may have no movetext or the file may be empty
+            for (int i = gameStart; i < chunkLength; i++) {
+                if (chunk[i] > ' ') {
+                    batch.add(chunk, gameStart, chunkLength - gameStart);
+                    break;
+                }
+            }
+            if (batch.count > 0) {
+                submit(executor, pending, batch, report);
+            }
+            while (!pending.isEmpty()) {
+                collect(pending.poll().get(), report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report.nanos = System.nanoTime() - startTime;
+        return report;
+    }
+
+    private void submit(ExecutorService executor, ArrayDeque<Future<Batch>> pending, Batch batch, Report report)
+            throws InterruptedException, ExecutionException {
+        if (pending.size() >= threads * 2) {
+            collect(pending.poll().get(), report);
+        }
+        pending.add(executor.submit(batch::replay));
+    }
+
+    private static void collect(Batch batch, Report report) {
+        report.games += batch.count;
+        report.plies += batch.plies;
+        report.errors.addAll(batch.errors);
+    }
+
+    // Usage: PGNReplayer <input> [threads]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: PGNReplayer <input> [threads]");
+            System.exit(1);
+        }
+
+        PGNReplayer replayer = args.length > 1 ? new PGNReplayer(Integer.parseInt(args[1])) : new PGNReplayer();
+        Report report = replayer.replay(Paths.get(args[0]));
+        for (GameError error : report.getErrors()) {
+            System.err.println(error);
+        }
+        System.out.println(report);
+    }
+
+    // Called after every ply replayed, the board must not be changed or kept after the call
+    public interface PositionListener {
+        void onPosition(long game, Board board);
+    }
+
+    public static class GameError {
+        private final long game;
+        private final int ply;
+        private final String message;
+
+        GameError(long game, int ply, String message) {
+            this.game = game;
+            this.ply = ply;
+            this.message = message;
+        }
+
+        // Games are numbered from one in the input order
+        public long getGame() {
+            return game;
+        }
+
+        // Ply the error happened at, zero for errors in tags
+        public int getPly() {
+            return ply;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Game " + game + ", ply " + ply + ": " + message;
+        }
+    }
+
+    public static class Report {
+        private long bytes;
+        private long games;
+        private long plies;
+        private List<GameError> errors = new ArrayList<>();
+        private long nanos;
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getPlies() {
+            return plies;
+        }
+
+        // Errors in the input order, at most one per game
+        public List<GameError> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getGamesPerSecond() {
+            return games * 1e9 / Math.max(nanos, 1);
+        }
+
+        public double getPliesPerSecond() {
+            return plies * 1e9 / Math.max(nanos, 1);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d plies, %d errors in %.3f s (%.0f games/s, %.0f plies/s)",
+                    games, plies, errors.size(), nanos / 1e9, getGamesPerSecond(), getPliesPerSecond());
+        }
+    }
+
+    // Consecutive games, each a slice of the chunk it was read into
+    private static class Batch {
+        private final long firstGame;
+        private final BoardPool boards;
+        private final MoveCache moveCache;
+        private final PositionListener listener;
+        private final byte[][] buffers;
+        private final int[] offsets;
+        private final int[] lengths;
+        private int count;
+        private final List<GameError> errors = new ArrayList<>();
+        // Reusable buffers for the current token and tag
+        private final StringBuilder token = new StringBuilder();
+        private final StringBuilder tagName = new StringBuilder();
+        private final StringBuilder tagValue = new StringBuilder();
+        private long plies;
+
+        Batch(long firstGame, int size, BoardPool boards, MoveCache moveCache, PositionListener listener) {
+            this.firstGame = firstGame;
+            this.boards = boards;
+            this.moveCache = moveCache;
+            this.listener = listener;
+            buffers = new byte[size][];
+            offsets = new int[size];
+            lengths = new int[size];
+        }
+
+        void add(byte[] buffer, int offset, int length) {
+            buffers[count] = buffer;
+            offsets[count] = offset;
+            lengths[count] = length;
+            count++;
+        }
+
+        Batch replay() throws FENFormatException {
+            Board board = boards.acquire();
+            board.setMoveCache(moveCache);
+            try {
+                for (int i = 0; i < count; i++) {
+                    replayGame(board, buffers[i], offsets[i], offsets[i] + lengths[i], firstGame + i);
+                }
+            } finally {
+                boards.release(board);
+            }
+            return this;
+        }
+
+        private void replayGame(Board board, byte[] game, int start, int end, long number) {
+            String fen = null;
+            boolean started = false;
+            int variationDepth = 0;
+            int ply = 0;
+            int i = start;
+
+            while (i < end) {
+                byte c = game[i];
+                if (c == '{') {
+                    i = skipPast(game, i, end, '}');
+                } else if (c == ';' || c == '%' && (i == start || game[i - 1] == '\n')) {
+                    i = skipPast(game, i, end, '\n');
+                } else if (c == '[' && !started) {
+                    i = readTag(game, i, end);
+                    if ("FEN".contentEquals(tagName)) {
+                        fen = tagValue.toString();
+                    }
+                } else if (c == '(') {
+                    variationDepth++;
+                    i++;
+                } else if (c == ')') {
+                    variationDepth = Math.max(0, variationDepth - 1);
+                    i++;
+                } else if (c == '$') {
+                    // Numeric annotation glyph
+                    i++;
+                    while (i < end && game[i] >= '0' && game[i] <= '9') {
+                        i++;
+                    }
+                } else if (c <= ' ' || isDelimiter(c)) {
+                    i++;
+                } else {
+                    token.setLength(0);
+                    while (i < end && game[i] > ' ' && !isDelimiter(game[i])) {
+                        token.append((char) (game[i++] & 0xFF));
+                    }
+                    if (variationDepth > 0) {
+                        continue;
+                    }
+
+                    if (!started) {
+                        started = true;
+                        FENError error = board.tryReset(fen != null ? fen : Board.START_FEN, 0, 0, 0);
+                        if (error != FENError.NONE) {
+                            errors.add(new GameError(number, 0, error.getMessage()));
+                            return;
+                        }
+                    }
+                    if (isResult(token)) {
+                        return;
+                    }
+                    if (!stripMoveNumber(token)) {
+                        continue;
+                    }
+
+                    if (board.getGameResult() != GameResult.NOT_FINISHED) {
+                        errors.add(new GameError(number, ply + 1,
+                                "Move " + token + " after the end of the game: " + board.getGameResult()));
+                        return;
+                    }
+                    int code = board.findSanMove(token);
+                    if (code < 0) {
+                        errors.add(new GameError(number, ply + 1,
+                                (code == -2 ? "Ambiguous move " : "Illegal move ") + token));
+                        return;
+                    }
+                    try {
+                        board.moveCode(code);
+                    } catch (IllegalMoveException e) {
+                        errors.add(new GameError(number, ply + 1, "Illegal move " + token));
+                        return;
+                    }
+                    ply++;
+                    plies++;
+                    if (listener != null) {
+                        listener.onPosition(number, board);
+                    }
+                }
+            }
+
+            // Game without moves still has to have a valid position
+            if (!started) {
+                FENError error = board.tryReset(fen != null ? fen : Board.START_FEN, 0, 0, 0);
+                if (error != FENError.NONE) {
+                    errors.add(new GameError(number, 0, error.getMessage()));
+                }
+            }
+        }
+
+        // Reads the tag name and its unescaped value, returns the index after the tag
+        private int readTag(byte[] game, int i, int end) {
+            tagName.setLength(0);
+            tagValue.setLength(0);
+            i++;
+            while (i < end && game[i] <= ' ') {
+                i++;
+            }
+            while (i < end && game[i] > ' ' && game[i] != '"' && game[i] != ']') {
+                tagName.append((char) (game[i++] & 0xFF));
+            }
+            while (i < end && game[i] != '"' && game[i] != ']' && game[i] != '\n') {
+                i++;
+            }
+            if (i < end && game[i] == '"') {
+                i++;
+                while (i < end && game[i] != '"' && game[i] != '\n') {
+                    if (game[i] == '\\' && i + 1 < end) {
+                        i++;
+                    }
+                    tagValue.append((char) (game[i++] & 0xFF));
+                }
+            }
+            while (i < end && game[i] != ']' && game[i] != '\n') {
+                i++;
+            }
+            return i + 1;
+        }
+
+        // Removes the move number indication like "12." or "12..." the token may start with,
+        // returns false if nothing is left
+        private static boolean stripMoveNumber(StringBuilder token) {
+            int i = 0;
+            while (i < token.length() && token.charAt(i) >= '0' && token.charAt(i) <= '9') {
+                i++;
+            }
+            if (i < token.length() && token.charAt(i) == '.') {
+                while (i < token.length() && token.charAt(i) == '.') {
+                    i++;
+                }
+                token.delete(0, i);
+            }
+            // Standalone move suffix annotations like "!?" are skipped as well
+            return token.length() > 0 && token.charAt(0) != '!' && token.charAt(0) != '?';
+        }
+
+        private static boolean isResult(StringBuilder token) {
+            return "1-0".contentEquals(token) || "0-1".contentEquals(token) || "1/2-1/2".contentEquals(token) ||
+                    "*".contentEquals(token);
+        }
+
+        private static boolean isDelimiter(byte c) {
+            return c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ']' || c == ';' || c == '$';
+        }
+
+        private static int skipPast(byte[] game, int i, int end, char c) {
+            while (i < end && game[i] != c) {
+                i++;
+            }
+            return i + 1;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.doublechess.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Writes a game record in PGN export format while the game goes on. Attached to a board with Board.setPGNWriter,
+// it gets every move played and the result token when the game is finished. The record is kept until the game
+// is finished and then written at once, so the Result tag has the real result. Live writers write every move
+// at once instead, their Result tag is "*" unless the game is finished when attached, or set explicitly.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class PGNWriter {
+    private static final int MAX_LINE_LENGTH = 79;
+
+    private final Appendable out;
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    // Movetext waiting for the result, unused by live writers
+    private final StringBuilder movetext = new StringBuilder();
+    private boolean live;
+    private int column;
+    private boolean moveNumberRequired = true;
+    private boolean finished;
+
+    public PGNWriter(Appendable out) {
+        this.out = out;
+        // Seven tag roster in the required order
+        tags.put("Event", "?");
+        tags.put("Site", "?");
+        tags.put("Date", "????.??.??");
+        tags.put("Round", "?");
+        tags.put("White", "?");
+        tags.put("Black", "?");
+        tags.put("Result", "*");
+    }
+
+    // Tags have to be set before the writer is attached to a board
+    public PGNWriter setTag(String name, String value) {
+        tags.put(name, value);
+        return this;
+    }
+
+    // Moves are written as they are played, like in live broadcasts. Has to be set before the writer is attached.
+    public PGNWriter setLive(boolean live) {
+        this.live = live;
+        return this;
+    }
+
+    public boolean isLive() {
+        return live;
+    }
+
+    // Writes the result token of an unfinished or externally adjudicated game, only the first call has effect
+    public void finish(GameResult gameResult) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        appendToken(resultToken(gameResult));
+        if (!live) {
+            tags.put("Result", resultToken(gameResult));
+            writeHeader();
+            append(movetext);
+            movetext.setLength(0);
+        }
+        append("\n\n");
+    }
+
+    void start(Board board) {
+        tags.put("TimeControl", board.getWhiteTimeInitial() > 0 ?
+                seconds(board.getWhiteTimeInitial()) + "+" + seconds(board.getIncrement()) : "-");
+        String initialFEN = board.getInitialFEN();
+        if (!initialFEN.equals(Board.START_FEN)) {
+            tags.put("SetUp", "1");
+            tags.put("FEN", initialFEN);
+        }
+        if (board.getGameResult() != GameResult.NOT_FINISHED) {
+            tags.put("Result", resultToken(board.getGameResult()));
+        }
+
+        if (live) {
+            writeHeader();
+        }
+    }
+
+    void appendMove(int moveNumber, boolean white, String san) {
+        if (white || moveNumberRequired) {
+            appendToken(white ? moveNumber + "." : moveNumber + "...");
+        }
+        appendToken(san);
+        moveNumberRequired = false;
+    }
+
+    static String resultToken(GameResult gameResult) {
+        switch (gameResult) {
+            case WHITE_WON_BY_CHECKMATE:
+            case WHITE_WON_BY_RESIGNATION:
+            case WHITE_WON_ON_TIME:
+                return "1-0";
+            case BLACK_WON_BY_CHECKMATE:
+            case BLACK_WON_BY_RESIGNATION:
+            case BLACK_WON_ON_TIME:
+                return "0-1";
+            case NOT_FINISHED:
+                return "*";
+            default:
+                return "1/2-1/2";
+        }
+    }
+
+    private void writeHeader() {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            header.append('[').append(tag.getKey()).append(" \"")
+                    .append(tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+        }
+        append(header.append('\n'));
+    }
+
+    private void appendToken(String token) {
+        // Export format lines are limited in length, tokens are never split
+        if (column > 0 && column + 1 + token.length() > MAX_LINE_LENGTH) {
+            appendMovetext("\n");
+            column = 0;
+        } else if (column > 0) {
+            appendMovetext(" ");
+            column++;
+        }
+        appendMovetext(token);
+        column += token.length();
+    }
+
+    private void appendMovetext(String text) {
+        if (live) {
+            append(text);
+        } else {
+            movetext.append(text);
+        }
+    }
+
+    private void append(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String seconds(long millis) {
+        return millis % 1000 == 0 ? String.valueOf(millis / 1000) : String.valueOf(millis / 1000.0);
+    }
+}
@@ -0,0 +1,100 @@
+package com.doublechess.core;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Lazy SMP: all the threads search the same root on their own copies of the position and share only the
+// transposition table. Helper threads fill the table with results the main thread then finds, half of them
+// start one iteration deeper so the threads spread over depths. The result is the main thread's one.
+// A single search runs at a time, stop may be called from any thread.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class ParallelSearch implements AutoCloseable {
+    private static final int DEFAULT_TABLE_CAPACITY = 1 << 22;
+
+    private final TranspositionTable table;
+    private final Search main;
+    private final Search[] helpers;
+    private final ExecutorService executor;
+
+    public ParallelSearch(int threads) {
+        this(threads, new TranspositionTable(DEFAULT_TABLE_CAPACITY));
+    }
+
+    public ParallelSearch(int threads, TranspositionTable table) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads count must be positive");
+        }
+        this.table = table;
+        main = new Search(table);
+        helpers = new Search[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Search(table);
+        }
+        executor = helpers.length > 0 ? Executors.newFixedThreadPool(helpers.length, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int getThreads() {
+        return helpers.length + 1;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    public SearchResult search(Board board, int maxDepth) {
+        return search(board, maxDepth, 0, 0);
+    }
+
+    // Limits are the same as of Search, the nodes limit counts the main thread nodes only
+    public synchronized SearchResult search(Board board, int maxDepth, long timeLimitMillis, long nodeLimit) {
+        long startTime = System.nanoTime();
+        table.newSearch();
+
+        // Board is read on this thread only, workers get copies of its state
+        BitboardPosition position = board.copyState();
+        long[] gameKeys = board.getHashHistory();
+        int halfMoveClock = board.getHalfMoveCounter();
+        Future<?>[] futures = new Future<?>[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            Search helper = helpers[i];
+            int startDepth = 1 + (i & 1);
+            helper.prepare(position.copy(), gameKeys, halfMoveClock);
+            futures[i] = executor.submit(() -> helper.run(maxDepth, startDepth, startTime, 0, 0));
+        }
+        main.prepare(position, gameKeys, halfMoveClock);
+        main.run(maxDepth, 1, startTime, timeLimitMillis, nodeLimit);
+
+        long nodes = main.getNodes();
+        for (Search helper : helpers) {
+            helper.stop();
+        }
+        for (int i = 0; i < helpers.length; i++) {
+            try {
+                futures[i].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            nodes += helpers[i].getNodes();
+        }
+        return main.result(board, nodes, startTime);
+    }
+
+    public void stop() {
+        main.stop();
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
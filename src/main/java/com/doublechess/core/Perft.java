@@ -0,0 +1,118 @@
+package com.doublechess.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Counts leaf nodes of the legal moves tree, the standard way to test and measure a move generator
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class Perft {
+    private final BitboardPosition position;
+    private final MoveGenerator generator;
+    private final int[][] moves;
+
+    private Perft(BitboardPosition position, int depth) {
+        this.position = position;
+        this.generator = position.generator();
+        this.moves = new int[Math.max(depth, 1)][MoveGenerator.MAX_MOVES];
+    }
+
+    public static long perft(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        return new Perft(board.copyState(), depth).count(depth);
+    }
+
+    // Nodes count under every root move, keyed by the move in coordinate notation like "e2e4"
+    public static Map<String, Long> divide(Board board, int depth) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (depth == 0) {
+            return result;
+        }
+
+        Perft perft = new Perft(board.copyState(), depth);
+        int[] rootMoves = perft.moves[depth - 1];
+        int count = perft.generator.generate(rootMoves);
+        for (int i = 0; i < count; i++) {
+            int move = rootMoves[i];
+            perft.position.make(move);
+            result.put(MoveCode.toCoordinates(move), depth == 1 ? 1 : perft.count(depth - 1));
+            perft.position.unmake(move);
+        }
+        return result;
+    }
+
+    public static long parallelPerft(Board board, int depth) {
+        return parallelPerft(board, depth, ForkJoinPool.commonPool());
+    }
+
+    // Root moves are counted in parallel, each task on its own copy of the position
+    public static long parallelPerft(Board board, int depth, ForkJoinPool pool) {
+        if (depth <= 1) {
+            return perft(board, depth);
+        }
+
+        BitboardPosition root = board.copyState();
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int count = root.generator().generate(rootMoves);
+
+        List<RootMoveTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new RootMoveTask(root, rootMoves[i], depth - 1));
+        }
+
+        return pool.invoke(new RecursiveTask<Long>() {
+            @Override
+            protected Long compute() {
+                long nodes = 0;
+                for (RootMoveTask task : invokeAll(tasks)) {
+                    nodes += task.join();
+                }
+                return nodes;
+            }
+        });
+    }
+
+    private long count(int depth) {
+        int[] buffer = moves[depth - 1];
+        int count = generator.generate(buffer);
+        if (depth == 1) {
+            // Leaf nodes don't need to be visited
+            return count;
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            position.make(move);
+            nodes += count(depth - 1);
+            position.unmake(move);
+        }
+        return nodes;
+    }
+
+    @SuppressWarnings("serial")
+    private static class RootMoveTask extends RecursiveTask<Long> {
+        private final BitboardPosition root;
+        private final int move;
+        private final int depth;
+
+        RootMoveTask(BitboardPosition root, int move, int depth) {
+            this.root = root;
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            // Root is only read here, so the copies can be taken concurrently
+            BitboardPosition position = root.copy();
+            position.make(move);
+            return new Perft(position, depth).count(depth);
+        }
+    }
+}
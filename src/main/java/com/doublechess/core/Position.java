@@ -0,0 +1,126 @@
+package com.doublechess.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Immutable view of a board at some moment, safe to read from any thread without locking.
+// Board publishes a new one after each position change when asked to, see Board.snapshot().
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class Position {
+    private final BitboardPosition state;
+    private final int[] moves;
+    private final int enpassant;
+    private final int halfMoveCounter;
+    private final int fullMoveCounter;
+    private final long whiteTime;
+    private final long blackTime;
+    private final long increment;
+    private final long lastMoveTime;
+    private final GameResult gameResult;
+    // Built on the first request, String is immutable so a race only means building it twice
+    private String fen;
+
+    Position(BitboardPosition state, int[] moves, int enpassant, int halfMoveCounter, int fullMoveCounter,
+             long whiteTime, long blackTime, long increment, long lastMoveTime, GameResult gameResult) {
+        this.state = state;
+        this.moves = moves;
+        this.enpassant = enpassant;
+        this.halfMoveCounter = halfMoveCounter;
+        this.fullMoveCounter = fullMoveCounter;
+        this.whiteTime = whiteTime;
+        this.blackTime = blackTime;
+        this.increment = increment;
+        this.lastMoveTime = lastMoveTime;
+        this.gameResult = gameResult;
+    }
+
+    public boolean hasPiece(int position) {
+        return !state.isEmpty(position);
+    }
+
+    // Piece type constant of Piece class or -1 for empty square
+    public int getPieceType(int position) {
+        return state.typeAt(position);
+    }
+
+    public boolean isWhitePiece(int position) {
+        return !state.isEmpty(position) && state.colorAt(position) == BitboardPosition.WHITE;
+    }
+
+    public boolean isWhiteToMove() {
+        return state.sideToMove == BitboardPosition.WHITE;
+    }
+
+    public int getPossibleMovesCount() {
+        return moves.length;
+    }
+
+    public boolean isPossibleMove(int from, int to) {
+        for (int move : moves) {
+            if (MoveCode.from(move) == from && MoveCode.to(move) == to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isPossibleMove(String from, String to) {
+        return isPossibleMove(CoreUtils.algebraicToPosition(from), CoreUtils.algebraicToPosition(to));
+    }
+
+    // Possible moves in coordinate notation like "e2e4" or "e7e8q"
+    public List<String> getPossibleMoves() {
+        List<String> result = new ArrayList<>(moves.length);
+        for (int move : moves) {
+            result.add(MoveCode.toCoordinates(move));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    public String getFEN() {
+        String result = fen;
+        if (result == null) {
+            result = state.toFEN(enpassant, halfMoveCounter, fullMoveCounter);
+            fen = result;
+        }
+        return result;
+    }
+
+    public long getPositionHash() {
+        return state.hash;
+    }
+
+    // Counts of pieces by kind, see MaterialKey
+    public long getMaterialKey() {
+        return state.materialKey;
+    }
+
+    public int getHalfMoveCounter() {
+        return halfMoveCounter;
+    }
+
+    public int getFullMoveCounter() {
+        return fullMoveCounter;
+    }
+
+    public long getWhiteTime() {
+        return whiteTime;
+    }
+
+    public long getBlackTime() {
+        return blackTime;
+    }
+
+    public long getIncrement() {
+        return increment;
+    }
+
+    public long getLastMoveTime() {
+        return lastMoveTime;
+    }
+
+    public GameResult getGameResult() {
+        return gameResult;
+    }
+}
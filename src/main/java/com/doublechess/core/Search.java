@@ -0,0 +1,366 @@
+package com.doublechess.core;
+
+import com.doublechess.core.piece.Piece;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Negamax alpha-beta search with iterative deepening and quiescence search. It runs on a copy of the board
+// position through make/unmake of move codes, no boards or moves are built inside the tree.
+// Instances are reusable but not thread-safe, except stop which may be called from any thread.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class Search {
+    public static final int MATE = 32000;
+    static final int MAX_PLY = 64;
+    private static final int INFINITY = MATE + 1;
+    // Piece values for move ordering
+    private static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};
+    // Move ordering scores: previous best line first, then captures by victim and attacker, killers, history
+    private static final int PV_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+
+    private final TranspositionTable table;
+    private BitboardPosition position;
+    private MoveGenerator generator;
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final int[][] moveScores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    // Triangular table of the best lines found from every ply
+    private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[] previousPv = new int[MAX_PLY];
+    private int previousPvLength;
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[] history = new int[64 * 64];
+    // Hashes of the game positions followed by the positions of the current line, for repetitions
+    private long[] keys;
+    private int rootKey;
+    private final int[] halfMoveClocks = new int[MAX_PLY];
+
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private boolean canStop;
+    private boolean stopped;
+    private volatile boolean stopRequested;
+    private int bestScore;
+    private int completedDepth;
+
+    public Search() {
+        this(null);
+    }
+
+    // The table may be shared with other searches, results of the previous searches are reused
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    public SearchResult search(Board board, int maxDepth) {
+        return search(board, maxDepth, 0, 0);
+    }
+
+    // Zero time or nodes limit means no limit, the first iteration is always completed
+    public SearchResult search(Board board, int maxDepth, long timeLimitMillis, long nodeLimit) {
+        long startTime = System.nanoTime();
+        if (table != null) {
+            table.newSearch();
+        }
+        prepare(board.copyState(), board.getHashHistory(), board.getHalfMoveCounter());
+        run(maxDepth, 1, startTime, timeLimitMillis, nodeLimit);
+        return result(board, nodes, startTime);
+    }
+
+    // Position is owned by the search from now on, the game hashes end with the hash of the position
+    void prepare(BitboardPosition position, long[] gameKeys, int halfMoveClock) {
+        this.position = position;
+        generator = position.generator();
+        keys = Arrays.copyOf(gameKeys, gameKeys.length + MAX_PLY);
+        rootKey = gameKeys.length - 1;
+        halfMoveClocks[0] = halfMoveClock;
+        stopRequested = false;
+    }
+
+    // Deepening starts from the given depth, so parallel searches don't all look at the same depths
+    void run(int maxDepth, int startDepth, long startTime, long timeLimitMillis, long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+        deadline = timeLimitMillis > 0 ? startTime + timeLimitMillis * 1_000_000 : 0;
+        nodes = 0;
+        canStop = false;
+        stopped = false;
+        previousPvLength = 0;
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, 0);
+        }
+        Arrays.fill(history, 0);
+
+        bestScore = 0;
+        completedDepth = 0;
+        for (int depth = Math.min(startDepth, maxDepth); depth <= Math.min(maxDepth, MAX_PLY - 1); depth++) {
+            int score = alphaBeta(depth, 0, -INFINITY, INFINITY);
+            if (stopped) {
+                break;
+            }
+
+            bestScore = score;
+            completedDepth = depth;
+            previousPvLength = pvLength[0];
+            System.arraycopy(pv[0], 0, previousPv, 0, previousPvLength);
+            canStop = true;
+
+            // No need to look further for a shorter mate or no moves, and the next iteration
+            // wouldn't be finished anyway when half of the time is gone
+            if (Math.abs(score) >= MATE - depth || previousPvLength == 0 ||
+                    deadline > 0 && System.nanoTime() > startTime + (deadline - startTime) / 2) {
+                break;
+            }
+        }
+    }
+
+    SearchResult result(Board board, long totalNodes, long startTime) {
+        List<String> principalVariation = new ArrayList<>(previousPvLength);
+        for (int i = 0; i < previousPvLength; i++) {
+            principalVariation.add(MoveCode.toCoordinates(previousPv[i]));
+        }
+        Move bestMove = previousPvLength > 0 ? board.getPossibleMove(previousPv[0]) : null;
+        return new SearchResult(bestMove, bestScore, principalVariation, completedDepth, totalNodes,
+                System.nanoTime() - startTime);
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    // Makes the running search return the result of the last completed iteration
+    public void stop() {
+        stopRequested = true;
+    }
+
+    private int alphaBeta(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        keys[rootKey + ply] = position.hash;
+        if (ply > 0 && isDraw(ply)) {
+            return 0;
+        }
+
+        boolean inCheck = position.isInCheck();
+        if (inCheck) {
+            // Forced lines are looked at deeper
+            depth++;
+        }
+        if (depth <= 0 || ply == MAX_PLY - 1) {
+            return quiescence(ply, alpha, beta);
+        }
+        countNode();
+
+        int tableMove = 0;
+        if (table != null) {
+            long entry = table.probe(position.hash);
+            if (entry != 0) {
+                tableMove = TranspositionTable.move(entry);
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (ply > 0 && TranspositionTable.depth(entry) >= depth && (bound == TranspositionTable.EXACT ||
+                        bound == TranspositionTable.LOWER && score >= beta ||
+                        bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] plyMoves = moves[ply];
+        int count = generator.generate(plyMoves);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(ply, count, false, tableMove);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = 0;
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(ply, i, count);
+            makeMove(move, ply);
+            int score = -alphaBeta(depth - 1, ply + 1, -beta, -alpha);
+            position.unmake(move);
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    pv[ply][0] = move;
+                    System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (alpha >= beta) {
+                        if (!isCapture(move)) {
+                            if (killers[ply][0] != move) {
+                                killers[ply][1] = killers[ply][0];
+                                killers[ply][0] = move;
+                            }
+                            history[MoveCode.from(move) * 64 + MoveCode.to(move)] += depth * depth;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (table != null) {
+            int bound = bestScore >= beta ? TranspositionTable.LOWER :
+                    bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(position.hash, bestMove, toTable(bestScore, ply), depth, bound);
+        }
+        return bestScore;
+    }
+
+    // Only captures and promotions are searched until the position is quiet, all moves when in check
+    private int quiescence(int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        countNode();
+
+        boolean inCheck = position.isInCheck();
+        int bestScore = -MATE + ply;
+        if (!inCheck) {
+            bestScore = evaluate();
+            if (bestScore >= beta || ply == MAX_PLY - 1) {
+                return bestScore;
+            }
+            alpha = Math.max(alpha, bestScore);
+        }
+
+        int[] plyMoves = moves[ply];
+        int count = generator.generate(plyMoves);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        if (ply == MAX_PLY - 1) {
+            return evaluate();
+        }
+        scoreMoves(ply, count, !inCheck, 0);
+
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(ply, i, count);
+            if (moveScores[ply][i] < 0) {
+                // Only quiet moves are left
+                break;
+            }
+            makeMove(move, ply);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            position.unmake(move);
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    private void makeMove(int move, int ply) {
+        boolean resetsClock = isCapture(move) || position.typeAt(MoveCode.from(move)) == Piece.PAWN;
+        position.make(move);
+        halfMoveClocks[ply + 1] = resetsClock ? 0 : halfMoveClocks[ply] + 1;
+    }
+
+    // Repetition of a position since the last capture or pawn move, the fifty moves rule or material
+    // neither side can mate with
+    private boolean isDraw(int ply) {
+        if (halfMoveClocks[ply] >= 100 || MaterialKey.isInsufficient(position.materialKey, true) &&
+                MaterialKey.isInsufficient(position.materialKey, false)) {
+            return true;
+        }
+        int current = rootKey + ply;
+        for (int i = current - 4; i >= Math.max(0, current - halfMoveClocks[ply]); i -= 2) {
+            if (keys[i] == keys[current]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scoreMoves(int ply, int count, boolean capturesOnly, int tableMove) {
+        int[] plyMoves = moves[ply];
+        int[] scores = moveScores[ply];
+        int pvMove = ply < previousPvLength ? previousPv[ply] : 0;
+        for (int i = 0; i < count; i++) {
+            int move = plyMoves[i];
+            if (move == pvMove && !capturesOnly) {
+                scores[i] = PV_SCORE;
+            } else if (move == tableMove && !capturesOnly) {
+                scores[i] = PV_SCORE - 1;
+            } else if (isCapture(move) || MoveCode.isPromotion(move)) {
+                // Most valuable victim by least valuable attacker
+                int victim = MoveCode.isEnpassant(move) ? Piece.PAWN : position.typeAt(MoveCode.to(move));
+                int promotion = MoveCode.isPromotion(move) ? PIECE_VALUES[MoveCode.promotionType(move)] : 0;
+                scores[i] = CAPTURE_SCORE + (victim != BitboardPosition.EMPTY ? PIECE_VALUES[victim] * 16 : 0) +
+                        promotion * 16 - position.typeAt(MoveCode.from(move));
+            } else if (capturesOnly) {
+                scores[i] = -1;
+            } else if (move == killers[ply][0] || move == killers[ply][1]) {
+                scores[i] = move == killers[ply][0] ? KILLER_SCORE + 1 : KILLER_SCORE;
+            } else {
+                scores[i] = Math.min(history[MoveCode.from(move) * 64 + MoveCode.to(move)], KILLER_SCORE - 1);
+            }
+        }
+    }
+
+    // Selection sort step, moves are mostly cut off before the end, so sorting the whole list isn't worth it
+    private int nextMove(int ply, int index, int count) {
+        int[] plyMoves = moves[ply];
+        int[] scores = moveScores[ply];
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = plyMoves[best];
+        int score = scores[best];
+        plyMoves[best] = plyMoves[index];
+        scores[best] = scores[index];
+        plyMoves[index] = move;
+        scores[index] = score;
+        return move;
+    }
+
+    // Mate scores are kept in the table as distances from the stored position, not from the root
+    private static int toTable(int score, int ply) {
+        return score >= MATE - MAX_PLY ? score + ply : score <= -MATE + MAX_PLY ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE - MAX_PLY ? score - ply : score <= -MATE + MAX_PLY ? score + ply : score;
+    }
+
+    private boolean isCapture(int move) {
+        return MoveCode.isEnpassant(move) || !position.isEmpty(MoveCode.to(move));
+    }
+
+    private int evaluate() {
+        return position.evaluate();
+    }
+
+    private void countNode() {
+        nodes++;
+        if ((nodes & 1023) == 0 && canStop && (stopRequested || nodeLimit > 0 && nodes >= nodeLimit ||
+                deadline > 0 && System.nanoTime() >= deadline)) {
+            stopped = true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.doublechess.core;
+
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of the last completed iteration of a search
+@SuppressWarnings({"WeakerAccess", "unused"})
+public final class SearchResult {
+    private final Move bestMove;
+    private final int score;
+    private final List<String> principalVariation;
+    private final int depth;
+    private final long nodes;
+    private final long nanos;
+
+    SearchResult(Move bestMove, int score, List<String> principalVariation, int depth, long nodes, long nanos) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.principalVariation = Collections.unmodifiableList(principalVariation);
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+    }
+
+    // Move of the searched board, null if there is no legal move
+    public Move getBestMove() {
+        return bestMove;
+    }
+
+    // Centipawns from the point of view of the player to move, mates are near Search.MATE
+    public int getScore() {
+        return score;
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    // Full moves to mate, negative if the player to move gets mated, zero if there is no mate found
+    public int getMateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -plies / 2;
+    }
+
+    // Expected moves starting with the best one, in coordinate notation like "e2e4" or "e7e8q"
+    public List<String> getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public double getNodesPerSecond() {
+        return nodes * 1e9 / Math.max(nanos, 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d score %s nodes %d nps %.0f pv %s", depth,
+                isMate() ? "mate " + getMateIn() : "cp " + score, nodes, getNodesPerSecond(),
+                String.join(" ", principalVariation));
+    }
+}
@@ -0,0 +1,18 @@
+package com.doublechess.core;
+
+// Monotonic milliseconds the game clocks run by. Tests can use a fake one to move time by hand.
+public interface TimeSource {
+    // System.nanoTime based, so it never goes back, but aligned to epoch milliseconds at class loading,
+    // so start times taken from the wall clock still fit
+    TimeSource SYSTEM = new TimeSource() {
+        private final long epochMillis = System.currentTimeMillis();
+        private final long originNanos = System.nanoTime();
+
+        @Override
+        public long millis() {
+            return epochMillis + (System.nanoTime() - originNanos) / 1_000_000;
+        }
+    };
+
+    long millis();
+}
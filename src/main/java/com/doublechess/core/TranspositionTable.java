@@ -0,0 +1,116 @@
+package com.doublechess.core;
+
+import java.util.Arrays;
+
+// Search results by position hash, shared without locks by the threads of a parallel search. An entry is
+// two longs: the hash xor the data, and the data. Writes of other threads may interleave, but a torn entry
+// no longer xors back to its hash and is read as a miss. Buckets hold a slot kept for the deepest result
+// of the current search and a slot that always takes the newest one.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class TranspositionTable {
+    static final int EXACT = 1;
+    static final int LOWER = 2;
+    static final int UPPER = 3;
+
+    // Data layout: move code 0-17, score 18-33, depth 34-41, bound 42-43, search generation 44-51
+    private static final int SCORE_SHIFT = 18;
+    private static final int DEPTH_SHIFT = 34;
+    private static final int BOUND_SHIFT = 42;
+    private static final int GENERATION_SHIFT = 44;
+    private static final int BUCKET_LONGS = 4;
+
+    private final long[] table;
+    private final int mask;
+    private int generation;
+
+    // Capacity in entries is rounded up to a power of two, an entry takes 16 bytes
+    public TranspositionTable(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        int buckets = size / 2;
+        table = new long[buckets * BUCKET_LONGS];
+        mask = buckets - 1;
+    }
+
+    public int getCapacity() {
+        return table.length / 2;
+    }
+
+    // Share of the sampled entries written by the current search
+    public double getUsage() {
+        int sampled = Math.min(table.length, 4000);
+        int used = 0;
+        for (int i = 0; i < sampled; i += 2) {
+            long data = table[i + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 2.0 / sampled;
+    }
+
+    // Must not be called while a search is running
+    public void clear() {
+        Arrays.fill(table, 0);
+        generation = 0;
+    }
+
+    // Entries of previous searches become first to be replaced
+    void newSearch() {
+        generation = (generation + 1) & 0xff;
+    }
+
+    // Entry data or zero if the position isn't in the table
+    long probe(long hash) {
+        int index = ((int) hash & mask) * BUCKET_LONGS;
+        long data = table[index + 1];
+        if ((table[index] ^ data) == hash && data != 0) {
+            return data;
+        }
+        data = table[index + 3];
+        if ((table[index + 2] ^ data) == hash && data != 0) {
+            return data;
+        }
+        return 0;
+    }
+
+    void store(long hash, int move, int score, int depth, int bound) {
+        int index = ((int) hash & mask) * BUCKET_LONGS;
+        long deepData = table[index + 1];
+        boolean sameDeep = (table[index] ^ deepData) == hash;
+        if (!sameDeep && (table[index + 2] ^ table[index + 3]) == hash) {
+            // Newest slot already has the position
+            index += 2;
+        } else if (!sameDeep && generation(deepData) == generation && depth(deepData) > depth) {
+            index += 2;
+        }
+
+        if (move == 0 && (table[index] ^ table[index + 1]) == hash) {
+            // Best move of a shallower result is still worth trying first
+            move = move(table[index + 1]);
+        }
+        long data = move | (long) (score + 32768) << SCORE_SHIFT | (long) Math.min(depth, 255) << DEPTH_SHIFT |
+                (long) bound << BOUND_SHIFT | (long) generation << GENERATION_SHIFT;
+        table[index] = hash ^ data;
+        table[index + 1] = data;
+    }
+
+    static int move(long data) {
+        return (int) data & 0x3ffff;
+    }
+
+    static int score(long data) {
+        return (int) (data >>> SCORE_SHIFT & 0xffff) - 32768;
+    }
+
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT & 0xff);
+    }
+
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT & 3);
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT & 0xff);
+    }
+}
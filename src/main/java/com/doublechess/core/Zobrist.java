@@ -0,0 +1,54 @@
+package com.doublechess.core;
+
+// Random keys of Zobrist hashing. Fixed seed keeps hashes equal between runs and processes.
+final class Zobrist {
+    private static final long[][] PIECES = new long[16][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] ENPASSANT_FILES = new long[8];
+    private static final long BLACK_TO_MOVE;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    static {
+        long seed = 0x3243F6A8885A308DL;
+        for (long[] keys : PIECES) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = mix(seed += GOLDEN_GAMMA);
+            }
+        }
+        for (int i = 1; i < CASTLING.length; i++) {
+            // No castling rights contribute nothing
+            CASTLING[i] = mix(seed += GOLDEN_GAMMA);
+        }
+        for (int i = 0; i < ENPASSANT_FILES.length; i++) {
+            ENPASSANT_FILES[i] = mix(seed += GOLDEN_GAMMA);
+        }
+        BLACK_TO_MOVE = mix(seed + GOLDEN_GAMMA);
+    }
+
+    private Zobrist() {
+    }
+
+    // Key of the piece code (type | color << 3) standing on the square
+    static long piece(int code, int square) {
+        return PIECES[code][square];
+    }
+
+    static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    static long enpassant(int square) {
+        return ENPASSANT_FILES[square & 7];
+    }
+
+    static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+
+    // SplitMix64 output function, good enough spread for hash keys
+    private static long mix(long z) {
+        z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+        return z ^ z >>> 31;
+    }
+}
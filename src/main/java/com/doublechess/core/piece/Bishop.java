@@ -22,6 +22,11 @@ public class Bishop extends Piece {
         super(white, position);
     }
 
+    @Override
+    public int getType() {
+        return BISHOP;
+    }
+
     @Override
     public boolean isLongRange() {
         return true;
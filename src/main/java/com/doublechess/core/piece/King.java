@@ -26,6 +26,11 @@ public class King extends Piece {
         super(white, position);
     }
 
+    @Override
+    public int getType() {
+        return KING;
+    }
+
     @Override
     public boolean isLongRange() {
         return false;
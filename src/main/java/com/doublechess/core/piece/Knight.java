@@ -26,6 +26,11 @@ public class Knight extends Piece {
         super(white, position);
     }
 
+    @Override
+    public int getType() {
+        return KNIGHT;
+    }
+
     @Override
     public boolean isLongRange() {
         return false;
@@ -23,6 +23,11 @@ public class Pawn extends Piece {
         super(white, position);
     }
 
+    @Override
+    public int getType() {
+        return PAWN;
+    }
+
     @Override
     public boolean isLongRange() {
         return false;
@@ -6,6 +6,14 @@ import com.doublechess.core.Direction;
 import java.util.List;
 
 public abstract class Piece {
+    // Piece type codes, also used as bitboard indexes
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
     protected boolean white;
     protected int position;
     protected boolean moved;
@@ -50,6 +58,8 @@ public abstract class Piece {
         return CoreUtils.positionToFile(position);
     }
 
+    public abstract int getType();
+
     public abstract boolean isLongRange();
 
     public abstract List<Direction> getAttackDirections();
@@ -26,6 +26,11 @@ public class Queen extends Piece {
         super(white, position);
     }
 
+    @Override
+    public int getType() {
+        return QUEEN;
+    }
+
     @Override
     public boolean isLongRange() {
         return true;
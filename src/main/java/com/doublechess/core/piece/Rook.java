@@ -22,6 +22,11 @@ public class Rook extends Piece {
         super(white, position);
     }
 
+    @Override
+    public int getType() {
+        return ROOK;
+    }
+
     @Override
     public boolean isLongRange() {
         return true;
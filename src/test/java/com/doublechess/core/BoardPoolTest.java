@@ -0,0 +1,44 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BoardPoolTest {
+    @Test
+    public void reuseBoards() throws FENFormatException, IllegalMoveException {
+        BoardPool pool = new BoardPool(1);
+        Board first = pool.acquire(300000, 300000, 0);
+        first.move("e2", "e4");
+        pool.release(first);
+        assertEquals(1, pool.size());
+
+        Board second = pool.acquire("4k3/8/8/8/8/8/P7/4K3 w - - 0 1");
+        assertSame(first, second);
+        assertEquals(0, pool.size());
+        assertEquals("4k3/8/8/8/8/8/P7/4K3 w - - 0 1", second.getFEN());
+        assertEquals(0, second.getWhiteTime());
+
+        // Boards released over the capacity are dropped
+        pool.release(second);
+        pool.release(new Board());
+        assertEquals(1, pool.size());
+        assertSame(second, pool.acquire());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void invalidFEN() throws FENFormatException {
+        BoardPool pool = new BoardPool(2);
+        pool.release(new Board());
+        try {
+            pool.acquire("8/8/8/8/8/8/8/8 w - - 0 1");
+            fail();
+        } catch (FENFormatException ignored) {
+        }
+        assertEquals(1, pool.size());
+        assertEquals(Board.START_FEN, pool.acquire().getFEN());
+    }
+}
@@ -2,9 +2,16 @@ package com.doublechess.core;
 
 import com.doublechess.core.exception.FENFormatException;
 import com.doublechess.core.exception.IllegalMoveException;
+import com.doublechess.core.piece.Rook;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -94,6 +101,21 @@ public class BoardTest {
         assertEquals("Qe7#", board.getLastMove().getAlgebraic());
     }
 
+    @Test
+    public void possibleMovesFlagsAfterPositionChange() throws FENFormatException, IllegalMoveException {
+        Board board = new Board("4k3/8/4K3/2Q3R1/8/8/8/8 w - - 0 1");
+        Move mate = board.getPossibleMove("g5", "g8");
+        Move check = board.getPossibleMove("c5", "b5");
+        Move quiet = board.getPossibleMove("c5", "c4");
+        board.move("c5", "c4");
+        board.move("e8", "d8");
+
+        assertEquals("Rg8#", mate.getAlgebraic());
+        assertEquals("Qb5+", check.getAlgebraic());
+        assertFalse(check.isLastMove());
+        assertEquals("Qc4", quiet.getAlgebraic());
+    }
+
     @Test
     public void discoveredCheckmate() throws FENFormatException, IllegalMoveException {
         Board board = new Board("4k3/8/8/8/8/8/3RKR2/4Q3 w - - 0 1");
@@ -205,6 +227,214 @@ public class BoardTest {
                 "f8=Q+", "Kd4", "d8=R+", "Kc3", "gxh8=Q+"}, board);
     }
 
+    @Test
+    public void makeAndUnmakeMoves() throws FENFormatException, IllegalMoveException {
+        String fen = "r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1";
+        Board board = new Board(fen);
+        long hash = board.getPositionHash();
+        int possibleMovesCount = board.getPossibleMoves().size();
+
+        board.makeMove(board.getPossibleMove("e5", "d6"));
+        board.makeMove(board.getPossibleMove("e8", "g8"));
+        board.makeMove(board.getPossibleMove("b7", "a8").getPromotionMoves()[PromotionPiece.KNIGHT.ordinal()]);
+        board.makeMove(board.getPossibleMove("f8", "f1"));
+        assertEquals("N5k1/8/3P4/8/8/8/8/R3Kr1R w KQ - 1 3", board.getFEN());
+
+        for (int i = 0; i < 4; i++) {
+            board.unmakeMove();
+        }
+
+        assertEquals(fen, board.getFEN());
+        assertEquals(hash, board.getPositionHash());
+        assertEquals(possibleMovesCount, board.getPossibleMoves().size());
+        assertTrue(board.getMovesHistory().isEmpty());
+        assertNotNull(board.getPossibleMove("e1", "g1"));
+        assertNotNull(board.getPossibleMove("e1", "c1"));
+        assertTrue(board.getPiece(CoreUtils.algebraicToPosition("a8")) instanceof Rook);
+    }
+
+    @Test
+    public void threefoldRepetition() throws FENFormatException, IllegalMoveException {
+        Board board = new Board();
+        long startHash = board.getPositionHash();
+        for (int i = 0; i < 2; i++) {
+            assertEquals(GameResult.NOT_FINISHED, board.getGameResult());
+            board.move("g1", "f3");
+            board.move("g8", "f6");
+            board.move("f3", "g1");
+            board.move("f6", "g8");
+        }
+
+        assertEquals(startHash, board.getPositionHash());
+        assertEquals(3, board.getRepetitionCount());
+        assertEquals(GameResult.DRAW_AFTER_REPETITION, board.getGameResult());
+    }
+
+    @Test
+    public void repetitionAfterPawnMove() throws FENFormatException, IllegalMoveException {
+        Board board = new Board("4k3/8/8/8/8/8/P7/4K3 w - - 0 1");
+        board.move("e1", "d1");
+        board.move("e8", "d8");
+        board.move("d1", "e1");
+        board.move("d8", "e8");
+        assertEquals(2, board.getRepetitionCount());
+
+        board.move("a2", "a3");
+        assertEquals(1, board.getRepetitionCount());
+        board.move("e8", "d8");
+        board.move("e1", "d1");
+        board.move("d8", "e8");
+        board.move("d1", "e1");
+        assertEquals(2, board.getRepetitionCount());
+        assertNotEquals(new Board("4k3/8/8/8/8/8/P7/4K3 b - - 0 1").getPositionHash(), board.getPositionHash());
+        assertEquals(new Board("4k3/8/8/8/8/P7/8/4K3 b - - 0 1").getPositionHash(), board.getPositionHash());
+        assertEquals(GameResult.NOT_FINISHED, board.getGameResult());
+    }
+
+    @Test
+    public void movesBuiltOnDemand() throws FENFormatException, IllegalMoveException {
+        // Move played without building possible moves gets the same notation
+        Board board = new Board("4k3/8/8/8/8/8/8/R4RK1 w - - 0 1");
+        board.move("a1", "d1");
+        assertEquals("Rad1", board.getLastMove().getAlgebraic());
+
+        board = new Board("4k3/8/8/8/8/8/8/R4RK1 w - - 0 1");
+        Move move = board.getPossibleMove("f1", "d1");
+        assertEquals("Rfd1", move.getAlgebraic());
+        assertTrue(board.getPossibleMoves().contains(move));
+        board.move("f1", "d1");
+        assertSame(move, board.getLastMove());
+        assertNull(board.getPossibleMove("f1", "d1"));
+    }
+
+    @Test
+    public void resetBoard() throws FENFormatException, IllegalMoveException {
+        Board board = ryuLopez();
+        board.reset("4k3/8/8/8/8/8/P7/4K3 w - - 0 1", 60000, 60000, 0);
+        assertEquals("4k3/8/8/8/8/8/P7/4K3 w - - 0 1", board.getFEN());
+        assertEquals(new Board("4k3/8/8/8/8/8/P7/4K3 w - - 0 1").getPositionHash(), board.getPositionHash());
+        assertEquals(7, board.getPossibleMoves().size());
+        assertTrue(board.getMovesHistory().isEmpty());
+        assertEquals(60000, board.getWhiteTime());
+
+        try {
+            board.reset("4k3/8/8/8/8/8/P7/8 w - - 0 1", 0, 0, 0);
+            fail();
+        } catch (FENFormatException ignored) {
+        }
+
+        // Start position gets the shared moves
+        board.reset("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 0, 0, 0);
+        assertEquals(20, board.getPossibleMoves().size());
+        board.move("e2", "e4");
+        board.move("e7", "e5");
+        board.move("g1", "f3");
+        board.move("b8", "c6");
+        board.move("f1", "b5");
+        assertEquals(ryuLopez().getFEN(), board.getFEN());
+        assertEquals(ryuLopez().getPositionHash(), board.getPositionHash());
+        assertEquals(GameResult.NOT_FINISHED, board.getGameResult());
+    }
+
+    @Test
+    public void movesKeptAcrossReset() throws FENFormatException, IllegalMoveException {
+        BoardPool pool = new BoardPool(1);
+        Board board = pool.acquire("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+        Move mate = board.getPossibleMove("h5", "f7");
+        Move check = board.getPossibleMove("c4", "f7");
+        pool.release(board);
+
+        // Moves still read as in their own game, the new game isn't touched by that
+        assertSame(board, pool.acquire());
+        assertEquals("Qxf7#", mate.getAlgebraic());
+        assertEquals("Bxf7+", check.getAlgebraic());
+        assertEquals(Board.START_FEN, board.getFEN());
+        assertEquals(new Board().getPositionHash(), board.getPositionHash());
+
+        // Promotion to a square occupied in the new game as well
+        board.reset("r3k3/1P6/8/8/8/8/8/4K3 w - - 0 1", 0, 0, 0);
+        Move promotion = board.getPossibleMove("b7", "a8").getPromotionMoves()[PromotionPiece.QUEEN.ordinal()];
+        board.reset(Board.START_FEN, 0, 0, 0);
+        assertEquals("bxa8=Q+", promotion.getAlgebraic());
+        assertTrue(promotion.isCheck());
+        assertEquals(Board.START_FEN, board.getFEN());
+        assertEquals(20, board.getPossibleMoves().size());
+        board.move("e4");
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", board.getFEN());
+    }
+
+    @Test
+    public void sanMoves() throws FENFormatException, IllegalMoveException {
+        // Every generated notation is resolved back to its move
+        String[] fens = {
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1",
+                "4k3/8/8/8/1N3N2/8/1N6/4K3 w - - 0 1"
+        };
+        for (String fen : fens) {
+            Board board = new Board(fen);
+            for (Move move : board.getPossibleMoves()) {
+                Move[] moves = move.getPromotionMoves() != null ? move.getPromotionMoves() : new Move[]{move};
+                for (Move sanMove : moves) {
+                    assertSame(sanMove, board.parseSan(sanMove.getAlgebraic()));
+                }
+            }
+        }
+
+        Board board = new Board("4k3/8/8/8/1N3N2/8/1N6/4K3 w - - 0 1");
+        assertEquals("Nb4d3", board.parseSan("Nb4d3").getAlgebraic());
+        try {
+            board.parseSan("Nbd3");
+            fail();
+        } catch (IllegalMoveException e) {
+            assertEquals("Ambiguous move Nbd3", e.getMessage());
+        }
+
+        board = new Board("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+        board.move("exd6");
+        board.move("O-O");
+        board.move("bxa8=Q");
+        board.move("Rfxa8");
+        board.move("0-0-0");
+        assertEquals("r5k1/8/3P4/8/8/8/8/2KR3R b - - 1 3", board.getFEN());
+        validateMovesHistory(new String[]{"exd6", "O-O", "bxa8=Q", "Rxa8", "O-O-O"}, board);
+        try {
+            board.move("Ke9");
+            fail();
+        } catch (IllegalMoveException e) {
+            assertEquals("Illegal move Ke9", e.getMessage());
+        }
+    }
+
+    @Test
+    public void sanCheckFlags() throws FENFormatException, IllegalMoveException {
+        // Moves parsed before the possible moves are built still know about checks
+        Board board = new Board("4k3/8/8/8/8/8/8/4K2Q w - - 0 1");
+        Move move = board.parseSan("Qh5");
+        assertTrue(move.isCheck());
+        assertFalse(move.isLastMove());
+        assertEquals("Qh5+", move.getAlgebraic());
+        assertEquals("Qh5+", board.getPossibleMove("h1", "h5").getAlgebraic());
+
+        // Parsed move stays right when another one is played
+        board = new Board("4k3/8/8/8/8/8/8/4K2Q w - - 0 1");
+        move = board.parseSan("Qh5");
+        board.makeMove(board.getPossibleMove("e1", "d1"));
+        assertEquals("Qh5+", move.getAlgebraic());
+        assertEquals("4k3/8/8/8/8/8/8/3K3Q b - - 1 1", board.getFEN());
+
+        board = new Board("4k3/8/8/8/8/8/8/4K2Q w - - 0 1");
+        board.move("Qh5");
+        board.move("Kd7");
+        board.move("Qd5");
+        validateMovesHistory(new String[]{"Qh5+", "Kd7", "Qd5+"}, board);
+
+        board = new Board("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1");
+        board.move("Rd8");
+        validateMovesHistory(new String[]{"Rd8#"}, board);
+        assertEquals(GameResult.WHITE_WON_BY_CHECKMATE, board.getGameResult());
+    }
+
     private void validateMovesHistory(String[] expected, Board board) {
         List<Move> movesHistory = board.getMovesHistory();
         for (int i = 0; i < expected.length; i++) {
@@ -221,4 +451,90 @@ public class BoardTest {
         board.move("f1", "b5");
         return board;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void evaluation() throws FENFormatException, IllegalMoveException, IOException {
+        Board board = new Board();
+        assertEquals(0, board.evaluate());
+        board.move("e4");
+        int afterE4 = board.evaluate();
+        assertTrue(afterE4 < 0);
+
+        // Incremental terms match a board set up from scratch along random games, moves and takebacks
+        Random random = new Random(1);
+        for (int game = 0; game < 20; game++) {
+            board.reset(Board.START_FEN, 0, 0, 0);
+            for (int ply = 0; ply < 200 && board.getGameResult() == GameResult.NOT_FINISHED; ply++) {
+                List<Move> moves = board.getPossibleMoves();
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                if (random.nextInt(4) == 0) {
+                    board.unmakeMove();
+                }
+                assertEquals(board.getFEN(), new Board(board.getFEN()).evaluate(), board.evaluate());
+            }
+        }
+
+        // Weights read back as written, missing tables keep the defaults
+        StringWriter text = new StringWriter();
+        EvaluationWeights.DEFAULT.write(text);
+        EvaluationWeights weights = EvaluationWeights.read(new StringReader(text.toString()));
+        board.setEvaluationWeights(weights);
+        board.reset(Board.START_FEN, 0, 0, 0);
+        board.move("e4");
+        assertEquals(afterE4, board.evaluate());
+
+        board.setEvaluationWeights(EvaluationWeights.read(new StringReader("# pawns only\nmg_pawn" +
+                new String(new char[64]).replace("\0", " 1") + "\nphase 0 0 0 0 0 0 mg_material 100 0 0 0 0 0")));
+        assertEquals(0, board.evaluate());
+        board.reset("4k3/8/8/8/8/8/PP6/4K3 b - - 0 1", 0, 0, 0);
+        assertEquals(-202, board.evaluate());
+
+        try {
+            EvaluationWeights.read(new StringReader("mg_pawn 1 2 3"));
+            fail();
+        } catch (IOException e) {
+            assertEquals("Line 1: 64 values expected in mg_pawn", e.getMessage());
+        }
+        try {
+            EvaluationWeights.read(new StringReader("\nmg_pawns 1 2 3"));
+            fail();
+        } catch (IOException e) {
+            assertEquals("Line 2: unknown table mg_pawns", e.getMessage());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void pieceAttacksIterable() throws FENFormatException {
+        Board board = new Board();
+        List<Integer> squares = new ArrayList<>();
+        for (Integer square : board.new PieceAttacksIterable(board.getPiece(6))) {
+            squares.add(square);
+        }
+        assertEquals(Arrays.asList(21, 23), squares);
+
+        squares.clear();
+        for (Integer square : board.new PieceAttacksIterable(board.getPiece(3))) {
+            squares.add(square);
+        }
+        assertTrue(squares.isEmpty());
+    }
+
+    @Test
+    public void disambiguationByFile() throws FENFormatException, IllegalMoveException {
+        // Knights on different files and ranks are told apart by the file only
+        Board board = new Board("4k3/8/8/8/8/5N2/8/1N2K3 w - - 0 1");
+        assertEquals("Nbd2", board.getPossibleMove("b1", "d2").getAlgebraic());
+        assertEquals("Nfd2", board.getPossibleMove("f3", "d2").getAlgebraic());
+        assertEquals("Nc3", board.getPossibleMove("b1", "c3").getAlgebraic());
+
+        // Same file needs the rank, same rank needs the file
+        board = new Board("4k3/8/8/8/8/8/8/1N1NK3 w - - 0 1");
+        assertEquals("Nbc3", board.getPossibleMove("b1", "c3").getAlgebraic());
+        board = new Board("4k3/8/8/8/8/1N6/8/1N2K3 w - - 0 1");
+        assertEquals("N1d2", board.getPossibleMove("b1", "d2").getAlgebraic());
+
+        board.move("N3d2");
+        assertEquals("4k3/8/8/8/8/8/3N4/1N2K3 b - - 1 1", board.getFEN());
+    }
+}
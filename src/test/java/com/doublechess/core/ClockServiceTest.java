@@ -0,0 +1,137 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ClockServiceTest {
+    @Test
+    public void timersFireOnTime() {
+        AtomicLong time = new AtomicLong(1000);
+        ClockService clock = new ClockService(time::get, 10);
+        Random random = new Random(1);
+
+        // Deadlines at every level of the wheel and beyond it
+        int count = 5000;
+        long[] deadlines = new long[count];
+        long[] fired = new long[count];
+        ClockService.Timer[] timers = new ClockService.Timer[count];
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            deadlines[i] = 1001 + (long) (Math.pow(random.nextDouble(), 4) * 300_000_000);
+            timers[i] = clock.schedule(deadlines[i], () -> fired[index] = time.get());
+        }
+        timers[0].cancel();
+        clock.reschedule(timers[1], deadlines[1] = 5000);
+        assertEquals(count - 1, clock.size());
+
+        long previous = time.get();
+        while (time.get() < 301_000_000) {
+            time.addAndGet(1 + random.nextInt(5000));
+            clock.tick();
+            for (int i = 1; i < count; i++) {
+                if (fired[i] == time.get()) {
+                    // Fired on the first tick at or after the deadline
+                    long due = (deadlines[i] + 9) / 10 * 10;
+                    assertTrue(previous < due && due <= time.get());
+                }
+            }
+            previous = time.get();
+        }
+
+        assertEquals(0, fired[0]);
+        for (int i = 1; i < count; i++) {
+            assertTrue(fired[i] != 0);
+        }
+        assertEquals(0, clock.size());
+    }
+
+    @Test
+    public void playerFlaggedWithoutMove() throws FENFormatException, IllegalMoveException {
+        AtomicLong time = new AtomicLong(1_000_000);
+        ClockService clock = new ClockService(time::get, 10);
+        Board board = new Board(60000, 60000, 0);
+        // Ticks happen on this thread, so the board is checked right away
+        board.setClock(clock, board::checkTime);
+        board.setStartTime(clock.now());
+
+        time.addAndGet(1000);
+        clock.tick();
+        board.move("e4");
+        assertEquals(59000, board.getWhiteTime());
+
+        time.addAndGet(60000);
+        clock.tick();
+        assertEquals(GameResult.NOT_FINISHED, board.getGameResult());
+        assertFalse(board.checkTime());
+
+        time.addAndGet(10);
+        clock.tick();
+        assertEquals(GameResult.WHITE_WON_ON_TIME, board.snapshot().getGameResult());
+        assertTrue(board.getBlackTime() < 0);
+        assertEquals(0, clock.size());
+
+        // Reset stops the clock
+        board.reset(Board.START_FEN, 60000, 60000, 0);
+        board.setStartTime(clock.now());
+        assertEquals(1, clock.size());
+        board.reset(Board.START_FEN, 60000, 60000, 0);
+        assertEquals(0, clock.size());
+    }
+
+    @Test
+    public void hostedGameFlagged() throws Exception {
+        AtomicLong time = new AtomicLong(1_000_000);
+        ClockService clock = new ClockService(time::get, 10);
+        try (GameHost host = new GameHost(2)) {
+            host.setClock(clock);
+            host.createGame("game", Board.START_FEN, 1000, 1000, 0);
+            host.submit("game", board -> {
+                board.setStartTime(clock.now());
+                return null;
+            }).get();
+
+            time.addAndGet(1010);
+            clock.tick();
+            assertEquals(GameResult.BLACK_WON_ON_TIME, host.submit("game", Board::getGameResult).get());
+        }
+    }
+
+    @Test
+    public void takebackRestoresClocks() throws FENFormatException, IllegalMoveException {
+        AtomicLong time = new AtomicLong(1_000_000);
+        ClockService clock = new ClockService(time::get, 10);
+        Board board = new Board(60000, 60000, 0);
+        board.setClock(clock, board::checkTime);
+        board.setStartTime(clock.now());
+
+        time.addAndGet(1000);
+        board.move("e4");
+        time.addAndGet(2000);
+        board.move("e5");
+        assertEquals(59000, board.getWhiteTime());
+        assertEquals(58000, board.getBlackTime());
+
+        board.unmakeMove();
+        assertEquals(59000, board.getWhiteTime());
+        assertEquals(60000, board.getBlackTime());
+        assertEquals(1_001_000, board.getLastMoveTime());
+        board.unmakeMove();
+        assertEquals(60000, board.getWhiteTime());
+
+        // Written moves can't be taken back
+        board.move("d4");
+        board.setPGNWriter(new PGNWriter(new StringBuilder()));
+        try {
+            board.unmakeMove();
+            fail();
+        } catch (IllegalMoveException e) {
+            assertEquals("Moves can't be taken back while a PGN writer is attached", e.getMessage());
+        }
+    }
+}
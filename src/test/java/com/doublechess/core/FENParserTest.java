@@ -0,0 +1,67 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class FENParserTest {
+    @Test
+    public void errorCodes() throws FENFormatException {
+        Board board = new Board();
+        assertEquals(FENError.NONE, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.NONE, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - - 0 1  ", 0, 0, 0));
+        assertEquals(FENError.SECTIONS_COUNT, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - - 0", 0, 0, 0));
+        assertEquals(FENError.SECTIONS_COUNT, board.tryReset("4k3/8/8/8/8/8/P7/4K3  w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.RANK_SQUARES_EXCEEDED, board.tryReset("4k4/8/8/8/8/8/P7/4K3 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.RANKS_EXCEEDED, board.tryReset("4k3/8/8/8/8/8/P7/4K3/8 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.TOO_MANY_KINGS, board.tryReset("4k2k/8/8/8/8/8/P7/4K3 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_PIECE_LETTER, board.tryReset("4k2x/8/8/8/8/8/P7/4K3 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.RANK_SQUARES_NOT_REACHED, board.tryReset("4k2/8/8/8/8/8/P7/4K3 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_PIECES_CHARACTER, board.tryReset("4k3/8/8/8/8/8/P7/4K3? w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.SQUARES_MISSING, board.tryReset("4k3/8/8/8/8/8/4K3 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.KINGS_MISSING, board.tryReset("8/8/8/8/8/8/P7/4K3 w - - 0 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_MOVE_ORDER, board.tryReset("4k3/8/8/8/8/8/P7/4K3 W - - 0 1", 0, 0, 0));
+        assertEquals(FENError.DUPLICATE_KINGSIDE_CASTLING, board.tryReset("4k3/8/8/8/8/8/8/4K2R w KK - 0 1", 0, 0, 0));
+        assertEquals(FENError.KINGSIDE_CASTLING_IMPOSSIBLE, board.tryReset("4k3/8/8/8/8/8/8/4K2R w k - 0 1", 0, 0, 0));
+        assertEquals(FENError.QUEENSIDE_CASTLING_IMPOSSIBLE, board.tryReset("4k3/8/8/8/8/8/8/4K2R w Q - 0 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_CASTLING_CHARACTER, board.tryReset("4k3/8/8/8/8/8/8/4K2R w Ka - 0 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_ENPASSANT_SQUARE, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - e3 0 1", 0, 0, 0));
+        assertEquals(FENError.IMPOSSIBLE_ENPASSANT, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - e6 0 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_COUNTERS, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - - x 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_COUNTERS, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - - 0 99999999999", 0, 0, 0));
+        assertEquals(FENError.NEGATIVE_HALF_MOVE_COUNTER, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - - -1 1", 0, 0, 0));
+        assertEquals(FENError.INVALID_FULL_MOVE_COUNTER, board.tryReset("4k3/8/8/8/8/8/P7/4K3 w - - 0 0", 0, 0, 0));
+
+        // Board can be used again after an error
+        assertEquals(FENError.NONE, board.tryReset(new StringBuilder(Board.START_FEN), 0, 0, 0));
+        assertEquals(Board.START_FEN, board.getFEN());
+    }
+
+    @Test
+    public void byteBuffer() throws FENFormatException {
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 3 12";
+        ByteBuffer buffer = ByteBuffer.wrap(("junk\n" + fen + "\nmore").getBytes(StandardCharsets.US_ASCII));
+        buffer.position(5).limit(5 + fen.length());
+
+        Board board = new Board();
+        assertEquals(FENError.NONE, board.tryReset(buffer, 0, 0, 0));
+        assertEquals(fen, board.getFEN());
+        assertEquals(new Board(fen).getPositionHash(), board.getPositionHash());
+        assertEquals(5, buffer.position());
+        assertEquals(48, board.getPossibleMoves().size());
+    }
+
+    @Test
+    public void exceptionMessage() {
+        try {
+            new Board("4k3/8/8/8/8/8/P7/4K3 w - e6 0 1");
+            fail();
+        } catch (FENFormatException e) {
+            assertEquals("Specified enpassant capture is impossible", e.getMessage());
+        }
+    }
+}
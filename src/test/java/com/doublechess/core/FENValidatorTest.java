@@ -0,0 +1,67 @@
+package com.doublechess.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FENValidatorTest {
+    @Test
+    public void validateFile() throws IOException {
+        Path directory = Files.createTempDirectory("fen");
+        Path input = directory.resolve("input.epd");
+        Path valid = directory.resolve("valid.fen");
+        Path rejected = directory.resolve("rejected.txt");
+
+        String[] lines = {
+                "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 3  ",
+                "4k3/8/8/8/8/8/P7/4K3 w - e6 0 1",
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - bm e5f7; id \"kiwipete\";",
+                "",
+                "4k3/8/8/8/8/8/P7/4K3 w - - x 1",
+                "4k3/8/8/8/8/8/P7/4K3 w - -\r",
+                "8/8/8/8/8/8/8/8 w - - 0 1"
+        };
+        List<String> expectedValid = new ArrayList<>();
+        List<String> expectedRejected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        // Many copies, so that lines get split between small chunks
+        for (int i = 0; i < 200; i++) {
+            for (String line : lines) {
+                content.append(line).append('\n');
+            }
+            expectedValid.add("rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 3");
+            expectedRejected.add("4k3/8/8/8/8/8/P7/4K3 w - e6 0 1\tSpecified enpassant capture is impossible");
+            expectedValid.add("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - bm e5f7; id \"kiwipete\";");
+            expectedRejected.add("4k3/8/8/8/8/8/P7/4K3 w - - x 1\tMove counters aren't integers");
+            expectedValid.add("4k3/8/8/8/8/8/P7/4K3 w - -");
+            expectedRejected.add("8/8/8/8/8/8/8/8 w - - 0 1\tBoth kings should be specified");
+        }
+        // Last line without line break
+        content.append("4k3/8/8/8/8/8/P7/4K3 b - - 5 40");
+        expectedValid.add("4k3/8/8/8/8/8/P7/4K3 b - - 5 40");
+        Files.write(input, content.toString().getBytes(StandardCharsets.US_ASCII));
+
+        FENValidator.Report report = new FENValidator(3, 1000).validate(input, valid, rejected);
+        assertEquals(expectedValid, Files.readAllLines(valid, StandardCharsets.ISO_8859_1));
+        assertEquals(expectedRejected, Files.readAllLines(rejected, StandardCharsets.ISO_8859_1));
+        assertEquals(601, report.getValidLines());
+        assertEquals(600, report.getRejectedLines());
+        assertEquals(content.length(), report.getBytes());
+
+        // Whole file as a single chunk gives the same result
+        new FENValidator(1).validate(input, valid, rejected);
+        assertEquals(expectedValid, Files.readAllLines(valid, StandardCharsets.ISO_8859_1));
+
+        for (Path path : Arrays.asList(input, valid, rejected, directory)) {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+public class GameHostTest {
+    @Test
+    public void movesAppliedInOrder() throws Exception {
+        try (GameHost host = new GameHost(4)) {
+            // Each submitting thread has own games, moves of all its games are interleaved
+            List<Thread> threads = new ArrayList<>();
+            List<CompletableFuture<GameResult>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                List<String> gameIds = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    gameIds.add(t + "-" + i);
+                    host.createGame(t + "-" + i);
+                }
+                threads.add(new Thread(() -> {
+                    List<CompletableFuture<GameResult>> lastMoves = new ArrayList<>();
+                    for (int i = 0; i < TestGames.OPERA_GAME.length; i++) {
+                        for (String gameId : gameIds) {
+                            CompletableFuture<GameResult> result = host.move(gameId, TestGames.OPERA_GAME[i]);
+                            if (i == TestGames.OPERA_GAME.length - 1) {
+                                lastMoves.add(result);
+                            }
+                        }
+                    }
+                    synchronized (results) {
+                        results.addAll(lastMoves);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(400, results.size());
+            for (CompletableFuture<GameResult> result : results) {
+                assertEquals(GameResult.WHITE_WON_BY_CHECKMATE, result.get());
+            }
+            assertEquals(400, host.getGameCount());
+            assertEquals(GameResult.WHITE_WON_BY_CHECKMATE, host.snapshot("3-99").getGameResult());
+        }
+    }
+
+    @Test
+    public void illegalMoveAndRemoval() throws FENFormatException, InterruptedException, ExecutionException {
+        try (GameHost host = new GameHost(2)) {
+            host.createGame("game");
+            CompletableFuture<GameResult> first = host.move("game", "e4");
+            CompletableFuture<GameResult> illegal = host.move("game", "e4");
+            CompletableFuture<GameResult> second = host.move("game", "e5");
+            CompletableFuture<String> fen = host.submit("game", Board::getFEN);
+            CompletableFuture<GameResult> removed = host.removeGame("game");
+
+            assertEquals(GameResult.NOT_FINISHED, first.get());
+            try {
+                illegal.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalMoveException);
+            }
+            assertEquals(GameResult.NOT_FINISHED, second.get());
+            assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2", fen.get());
+            assertEquals(GameResult.NOT_FINISHED, removed.get());
+
+            assertEquals(0, host.getGameCount());
+            assertNull(host.snapshot("game"));
+            try {
+                host.move("game", "Nf3").get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+        }
+    }
+}
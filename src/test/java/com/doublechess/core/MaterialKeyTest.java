@@ -0,0 +1,108 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MaterialKeyTest {
+    @Test
+    public void keptUpToDate() throws FENFormatException, IllegalMoveException {
+        Board board = new Board();
+        long key = board.getMaterialKey();
+        assertEquals("KQRRBBNNPPPPPPPPvKQRRBBNNPPPPPPPP", MaterialKey.toString(key));
+        assertEquals(1, MaterialKey.count(key, true, MaterialKey.LIGHT_BISHOP));
+        assertEquals(1, MaterialKey.count(key, false, MaterialKey.DARK_BISHOP));
+        assertEquals(EndgameClass.MIDDLEGAME, MaterialKey.getEndgameClass(key));
+
+        // Same key as of a board set up from scratch along random games, moves and takebacks
+        Random random = new Random(2);
+        for (int game = 0; game < 20; game++) {
+            board.reset(Board.START_FEN, 0, 0, 0);
+            for (int ply = 0; ply < 300 && board.getGameResult() == GameResult.NOT_FINISHED; ply++) {
+                List<Move> moves = board.getPossibleMoves();
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                if (random.nextInt(4) == 0) {
+                    board.unmakeMove();
+                }
+                assertEquals(board.getFEN(), new Board(board.getFEN()).getMaterialKey(), board.getMaterialKey());
+            }
+            assertEquals(board.getMaterialKey(), board.snapshot().getMaterialKey());
+        }
+    }
+
+    @Test
+    public void overfullSide() throws FENFormatException, IllegalMoveException {
+        // Counts saturate instead of spilling into the next kind
+        Board board = new Board("NNNNNNNN/NNNNNNNN/8/8/8/K7/7r/7k b - - 0 1");
+        long key = board.getMaterialKey();
+        assertEquals(15, MaterialKey.count(key, true, MaterialKey.KNIGHT));
+        assertEquals(0, MaterialKey.count(key, true, MaterialKey.LIGHT_BISHOP));
+        assertEquals("KNNNNNNNNNNNNNNNvKR", MaterialKey.toString(key));
+        assertFalse(MaterialKey.isInsufficient(key, true));
+        assertFalse(MaterialKey.isKnownDraw(key));
+        assertEquals(GameResult.NOT_FINISHED, board.getGameResult());
+
+        // Field leaves saturation once fewer than 15 pieces are really left
+        board.move("h2", "h7");
+        assertEquals(15, MaterialKey.count(board.getMaterialKey(), true, MaterialKey.KNIGHT));
+        board.move("a3", "a4");
+        board.move("h7", "g7");
+        assertEquals(14, MaterialKey.count(board.getMaterialKey(), true, MaterialKey.KNIGHT));
+        assertEquals(new Board(board.getFEN()).getMaterialKey(), board.getMaterialKey());
+        board.unmakeMove();
+        board.unmakeMove();
+        board.unmakeMove();
+        assertEquals(key, board.getMaterialKey());
+
+        // Bishops of one square color can't mate however many they are
+        board = new Board("BBBBBBBB/BBBBBBBB/8/8/8/8/8/K6k w - - 0 1");
+        assertEquals(8, MaterialKey.count(board.getMaterialKey(), true, MaterialKey.LIGHT_BISHOP));
+        assertEquals(8, MaterialKey.count(board.getMaterialKey(), true, MaterialKey.DARK_BISHOP));
+        assertFalse(MaterialKey.isInsufficient(board.getMaterialKey(), true));
+        board = new Board("B1B1B1B1/1B1B1B1B/B1B1B1B1/1B1B1B1B/8/8/8/K6k w - - 0 1");
+        assertEquals(15, MaterialKey.count(board.getMaterialKey(), true, MaterialKey.LIGHT_BISHOP));
+        assertTrue(MaterialKey.isInsufficient(board.getMaterialKey(), true));
+    }
+
+    @Test
+    public void lookups() throws FENFormatException, IllegalMoveException {
+        assertTrue(MaterialKey.isKnownDraw(MaterialKey.of("KvK")));
+        assertTrue(MaterialKey.isKnownDraw(MaterialKey.of("KRvKR")));
+        // Either side may have the extra material
+        assertTrue(MaterialKey.isKnownDraw(MaterialKey.of("KNvKR")));
+        assertFalse(MaterialKey.isKnownDraw(MaterialKey.of("KRvK")));
+        assertFalse(MaterialKey.isKnownDraw(MaterialKey.of("KRPvKR")));
+
+        // Bishops on squares of one color can't mate, the key tells them apart
+        Board board = new Board("4k3/8/8/8/8/8/8/1B1BK3 w - - 0 1");
+        assertEquals(MaterialKey.of("KBBvK"), board.getMaterialKey());
+        assertTrue(MaterialKey.isInsufficient(board.getMaterialKey(), true));
+        board = new Board("4k3/8/8/8/8/8/8/BB2K3 w - - 0 1");
+        assertFalse(MaterialKey.isInsufficient(board.getMaterialKey(), true));
+        assertEquals("KBBvK", MaterialKey.toString(board.getMaterialKey()));
+
+        assertEquals(EndgameClass.PAWN, MaterialKey.getEndgameClass(MaterialKey.of("KPPvKP")));
+        assertEquals(EndgameClass.MINOR_PIECE, MaterialKey.getEndgameClass(MaterialKey.of("KBPvKN")));
+        assertEquals(EndgameClass.ROOK, MaterialKey.getEndgameClass(MaterialKey.of("KRPvKR")));
+        assertEquals(EndgameClass.QUEEN, MaterialKey.getEndgameClass(MaterialKey.of("KQvKQP")));
+        assertEquals(EndgameClass.MIXED, MaterialKey.getEndgameClass(MaterialKey.of("KRBvKR")));
+        assertEquals(EndgameClass.MIDDLEGAME, MaterialKey.getEndgameClass(MaterialKey.of("KQRRvKQRR")));
+
+        // Game ends when the last piece able to mate is taken
+        board = new Board("4k3/8/8/8/8/8/3r4/3NK3 w - - 0 1");
+        board.move("Kxd2");
+        assertEquals(GameResult.DRAW_BY_UNSUFFICIENT_MATERIAL, board.getGameResult());
+
+        try {
+            MaterialKey.of("KRKR");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Bad material signature KRKR", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoveCacheTest {
+    @Test
+    public void sharedBetweenBoards() throws FENFormatException, IllegalMoveException {
+        MoveCache cache = new MoveCache(1000);
+        assertEquals(1024, cache.getCapacity());
+
+        Board first = new Board();
+        first.setMoveCache(cache);
+        replay(first);
+        assertEquals(0, cache.getHits());
+        assertEquals(TestGames.OPERA_GAME.length, cache.getMisses());
+
+        Board second = new Board();
+        second.setMoveCache(cache);
+        replay(second);
+        assertEquals(TestGames.OPERA_GAME.length, cache.getHits());
+        assertEquals(first.getFEN(), second.getFEN());
+        assertEquals(GameResult.WHITE_WON_BY_CHECKMATE, second.getGameResult());
+    }
+
+    @Test
+    public void smallCacheGivesSameMoves() throws FENFormatException, IllegalMoveException {
+        MoveCache cache = new MoveCache(4);
+        Board cached = new Board();
+        cached.setMoveCache(cache);
+        Board board = new Board();
+        for (String move : TestGames.OPERA_GAME) {
+            cached.move(move);
+            board.move(move);
+            assertEquals(board.getPossibleMoves().toString(), cached.getPossibleMoves().toString());
+        }
+        // Taking moves back reaches cached positions again
+        cached.unmakeMove();
+        cached.unmakeMove();
+        assertTrue(cache.getHits() > 0);
+        assertTrue(cache.getEvictions() > 0);
+        assertEquals(cache.getHits() + cache.getMisses(), TestGames.OPERA_GAME.length + 2);
+    }
+
+    @Test
+    public void sharesFlagsAndNotation() throws FENFormatException, IllegalMoveException {
+        // Positions are looked up once reached by a move
+        String fen = "6k1/p4ppp/8/8/8/8/5PPP/3R2K1 b - - 0 1";
+        MoveCache cache = new MoveCache(16);
+        Board first = new Board(fen);
+        first.setMoveCache(cache);
+        first.move("a6");
+        first.move("Rd8");
+
+        // Flags of the played move are known to the next board, other moves are still worked out on demand
+        Board second = new Board(fen);
+        second.setMoveCache(cache);
+        second.move("a6");
+        Move mate = second.getPossibleMove("d1", "d8");
+        assertTrue(mate.isFlagsResolved());
+        assertTrue(mate.isLastMove());
+        assertEquals("Rd8#", mate.getAlgebraic());
+        Move quiet = second.getPossibleMove("d1", "d2");
+        assertFalse(quiet.isFlagsResolved());
+        assertEquals("Rd2", quiet.getAlgebraic());
+
+        // Changes made by a caller stay with its own move
+        mate.setCheck(false);
+        assertEquals("Rd8", mate.getAlgebraic());
+
+        Board third = new Board(fen);
+        third.setMoveCache(cache);
+        third.move("a6");
+        for (Move move : third.getPossibleMoves()) {
+            assertEquals(move.getFrom() == 3 && move.getTo() == 59 || move.getTo() == 11, move.isFlagsResolved());
+        }
+        assertEquals("Rd8#", third.parseSan("Rd8").getAlgebraic());
+        assertEquals("Rd2", third.getPossibleMove("d1", "d2").toString());
+        Board uncached = new Board(fen);
+        uncached.move("a6");
+        assertEquals(uncached.getPossibleMoves().toString(), third.getPossibleMoves().toString());
+    }
+
+    private static void replay(Board board) throws IllegalMoveException {
+        for (String move : TestGames.OPERA_GAME) {
+            board.move(move);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class PGNReplayerTest {
+    @Test
+    public void replayFile() throws IOException, FENFormatException, IllegalMoveException {
+        // Game written by the board itself
+        StringBuilder written = new StringBuilder();
+        Board board = new Board();
+        board.setPGNWriter(new PGNWriter(written));
+        board.move("e2", "e4");
+        board.move("e7", "e5");
+        board.move("f1", "c4");
+        board.move("b8", "c6");
+        board.move("d1", "h5");
+        board.move("g8", "f6");
+        board.move("h5", "f7");
+
+        // Opera game of TestGames with comments, annotations and a variation
+        String games = written +
+                "[Event \"Paris\"]\n" +
+                "[Result \"1-0\"]\n" +
+                "\n" +
+                "1.e4 e5 2.Nf3 d6 3.d4 Bg4 {This is a weak move\n" +
+                "[already]} 4.dxe5 Bxf3 5.Qxf3 dxe5 6.Bc4 Nf6 7.Qb3 Qe7\n" +
+                "8.Nc3 c6 9.Bg5 $1 b5?! (9... Qb4 10. Qxb4) 10.Nxb5! cxb5 11.Bxb5+ Nbd7 12.O-O-O Rd8\n" +
+                "13.Rxd7 Rxd7 14.Rd1 Qe6 15.Bxd7+ Nxd7 16.Qb8+ ; Queen sacrifice\n" +
+                "Nxb8 17.Rd8# 1-0\n" +
+                "\n" +
+                "[Event \"Promotion\"]\n" +
+                "[SetUp \"1\"]\n" +
+                "[FEN \"8/P1k5/K7/8/8/8/8/8 w - - 0 1\"]\n" +
+                "\n" +
+                "1. a8=Q Kd6 2. Qd8+ Ke5 *\n" +
+                "\n" +
+                "[Event \"Castling\"]\n" +
+                "\n" +
+                "1. e4 e5 2. Nf3 Nc6 3. Bc4 Bc5 4. 0-0 {castles} 4... Nf6 5. d3 d6 6. Be3 Bxe3 7. fxe3 O-O\n" +
+                "1/2-1/2\n" +
+                "\n" +
+                "[Event \"Illegal\"]\n" +
+                "\n" +
+                "1. e4 e5 2. Ke3 Nc6 *\n" +
+                "\n" +
+                "[Event \"Ambiguous\"]\n" +
+                "[FEN \"4k3/8/8/8/8/8/8/R4RK1 w - - 0 1\"]\n" +
+                "\n" +
+                "1. Rd1 *\n" +
+                "\n" +
+                "[Event \"No kings\"]\n" +
+                "[FEN \"8/8/8/8/8/8/8/8 w - - 0 1\"]\n" +
+                "\n" +
+                "*\n" +
+                "\n" +
+                "[Event \"Tags only\"]\n" +
+                "[FEN \"8/8/8/8/8/8/8/7K w - - 0 1\"]\n" +
+                "\n";
+        StringBuilder content = new StringBuilder();
+        // Many copies, so that games get split between small batches and small chunks
+        for (int i = 0; i < 40; i++) {
+            content.append(games);
+        }
+        Path input = Files.createTempFile("games", ".pgn");
+        Files.write(input, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        AtomicLong positions = new AtomicLong();
+        Map<Long, String> lastFEN = new ConcurrentHashMap<>();
+        PGNReplayer.Report report = new PGNReplayer(3, 5, 300).replay(input, (game, position) -> {
+            positions.incrementAndGet();
+            lastFEN.put(game, position.getFEN());
+        });
+
+        // Game without movetext ends at the blank line after its tags
+        assertEquals(320, report.getGames());
+        assertEquals(40 * 60, report.getPlies());
+        assertEquals(report.getPlies(), positions.get());
+        assertEquals(160, report.getErrors().size());
+        assertEquals("Game 5, ply 3: Illegal move Ke3", report.getErrors().get(0).toString());
+        assertEquals("Game 6, ply 1: Ambiguous move Rd1", report.getErrors().get(1).toString());
+        assertEquals("Game 7, ply 0: " + FENError.KINGS_MISSING.getMessage(), report.getErrors().get(2).toString());
+        assertEquals("Game 8, ply 0: " + FENError.KINGS_MISSING.getMessage(), report.getErrors().get(3).toString());
+        assertEquals(320, report.getErrors().get(159).getGame());
+
+        // Annotated opera game ends where the plain one does
+        Board opera = new Board();
+        for (String move : TestGames.OPERA_GAME) {
+            opera.move(move);
+        }
+        assertEquals(opera.getFEN(), lastFEN.get(2L));
+        assertEquals("3Q4/8/K7/4k3/8/8/8/8 w - - 3 3", lastFEN.get(11L));
+    }
+}
@@ -0,0 +1,94 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PGNWriterTest {
+    @Test
+    public void scholarsMate() throws FENFormatException, IllegalMoveException {
+        StringBuilder pgn = new StringBuilder();
+        Board board = new Board(300000, 300000, 2000);
+        board.setPGNWriter(new PGNWriter(pgn).setTag("White", "Alice").setTag("Black", "Bob"));
+        board.move("e2", "e4");
+        board.move("e7", "e5");
+        board.move("f1", "c4");
+        board.move("b8", "c6");
+        board.move("d1", "h5");
+        board.move("g8", "f6");
+        board.move("h5", "f7");
+
+        assertEquals("[Event \"?\"]\n" +
+                "[Site \"?\"]\n" +
+                "[Date \"????.??.??\"]\n" +
+                "[Round \"?\"]\n" +
+                "[White \"Alice\"]\n" +
+                "[Black \"Bob\"]\n" +
+                "[Result \"1-0\"]\n" +
+                "[TimeControl \"300+2\"]\n" +
+                "\n" +
+                "1. e4 e5 2. Bc4 Nc6 3. Qh5 Nf6 4. Qxf7# 1-0\n" +
+                "\n", pgn.toString());
+    }
+
+    @Test
+    public void attachDuringGame() throws FENFormatException, IllegalMoveException {
+        StringBuilder pgn = new StringBuilder();
+        Board board = new Board("4k3/8/8/8/8/8/4P3/4K3 b - - 0 30");
+        board.move("e8", "d7");
+        board.setPGNWriter(new PGNWriter(pgn));
+        board.move("e2", "e4");
+        board.move("d7", "c6");
+        board.getPGNWriter().finish(board.getGameResult());
+
+        assertTrue(pgn.toString().contains("[SetUp \"1\"]\n[FEN \"4k3/8/8/8/8/8/4P3/4K3 b - - 0 30\"]\n"));
+        assertTrue(pgn.toString().contains("[TimeControl \"-\"]\n"));
+        assertTrue(pgn.toString().endsWith("\n\n30... Kd7 31. e4 Kc6 *\n\n"));
+    }
+
+    @Test
+    public void liveAndMadeMoves() throws FENFormatException, IllegalMoveException {
+        // Live writer gives every move at once, moves made without the clocks are written too
+        StringBuilder pgn = new StringBuilder();
+        Board board = new Board();
+        board.setPGNWriter(new PGNWriter(pgn).setLive(true));
+        board.move("f2", "f3");
+        board.makeMove(board.getPossibleMove("e7", "e5"));
+        assertTrue(pgn.toString().contains("[Result \"*\"]\n"));
+        assertTrue(pgn.toString().endsWith("\n\n1. f3 e5"));
+        board.move("g2", "g4");
+        board.makeMove(board.getPossibleMove("d8", "h4"));
+        assertTrue(pgn.toString().endsWith("\n\n1. f3 e5 2. g4 Qh4# 0-1\n\n"));
+
+        // Buffered writer gives nothing until the end, a finished game gets its result at once
+        pgn.setLength(0);
+        PGNWriter writer = new PGNWriter(pgn);
+        board.setPGNWriter(writer);
+        assertTrue(pgn.toString().contains("[Result \"0-1\"]\n"));
+        assertTrue(pgn.toString().endsWith("\n\n1. f3 e5 2. g4 Qh4# 0-1\n\n"));
+
+        pgn.setLength(0);
+        board.reset(Board.START_FEN, 0, 0, 0);
+        board.setPGNWriter(new PGNWriter(pgn));
+        board.move("e2", "e4");
+        assertEquals("", pgn.toString());
+    }
+
+    @Test
+    public void longLinesWrapped() throws FENFormatException, IllegalMoveException {
+        StringBuilder pgn = new StringBuilder();
+        Board board = new Board();
+        board.setPGNWriter(new PGNWriter(pgn));
+        String[] moves = TestGames.OPERA_GAME_SQUARES;
+        for (int i = 0; i < moves.length; i += 2) {
+            board.move(moves[i], moves[i + 1]);
+        }
+
+        String movetext = pgn.substring(pgn.indexOf("\n\n") + 2);
+        assertEquals("1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6 7. Qb3 Qe7 8.\n" +
+                "Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7 12. O-O-O Rd8 13. Rxd7 Rxd7 14.\n" +
+                "Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+ Nxb8 17. Rd8# 1-0\n\n", movetext);
+    }
+}
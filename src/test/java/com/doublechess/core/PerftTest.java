@@ -0,0 +1,94 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class PerftTest {
+    // Reference positions and counts from the Chess Programming Wiki perft results page
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String POSITION_3 = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    private static final String POSITION_4 = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    private static final String POSITION_5 = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+    @Test
+    public void initialPosition() throws FENFormatException {
+        Board board = new Board();
+        assertEquals(1, Perft.perft(board, 0));
+        assertEquals(20, Perft.perft(board, 1));
+        assertEquals(400, Perft.perft(board, 2));
+        assertEquals(8902, Perft.perft(board, 3));
+        assertEquals(197281, Perft.perft(board, 4));
+    }
+
+    @Test
+    public void referencePositions() throws FENFormatException {
+        assertEquals(97862, Perft.perft(new Board(KIWIPETE), 3));
+        assertEquals(674624, Perft.perft(new Board(POSITION_3), 5));
+        assertEquals(422333, Perft.perft(new Board(POSITION_4), 4));
+        assertEquals(62379, Perft.perft(new Board(POSITION_5), 3));
+    }
+
+    @Test
+    public void edgeCases() throws FENFormatException {
+        // Enpassant capture exposing the king
+        assertEquals(1134888, Perft.perft(new Board("3k4/3p4/8/K1P4r/8/8/8/8 b - - 0 1"), 6));
+        // Enpassant capture pinned along the diagonal after the double step
+        assertEquals(1015133, Perft.perft(new Board("8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1"), 6));
+        // Castling giving check
+        assertEquals(661072, Perft.perft(new Board("5k2/8/8/8/8/8/8/4K2R w K - 0 1"), 6));
+        // Castling rights lost by captures
+        assertEquals(1274206, Perft.perft(new Board("r3k2r/1b4bq/8/8/8/8/7B/R3K2R w KQkq - 0 1"), 4));
+        // Promotion out of check
+        assertEquals(3821001, Perft.perft(new Board("2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1"), 6));
+        // Underpromotion giving check
+        assertEquals(92683, Perft.perft(new Board("8/P1k5/K7/8/8/8/8/8 w - - 0 1"), 6));
+        // Stalemate and checkmate
+        assertEquals(2217, Perft.perft(new Board("K1k5/8/P7/8/8/8/8/8 w - - 0 1"), 6));
+        assertEquals(567584, Perft.perft(new Board("8/k1P5/8/1K6/8/8/8/8 w - - 0 1"), 7));
+        assertEquals(23527, Perft.perft(new Board("8/8/2k5/5q2/5n2/8/5K2/8 b - - 0 1"), 4));
+    }
+
+    @Test
+    public void divide() throws FENFormatException {
+        Board board = new Board(POSITION_5);
+        Map<String, Long> divide = Perft.divide(board, 2);
+        assertEquals(44, divide.size());
+
+        long total = 0;
+        for (long nodes : divide.values()) {
+            total += nodes;
+        }
+        assertEquals(1486, total);
+
+        // Promotions have the piece letter appended
+        assertTrue(divide.containsKey("d7c8q"));
+        assertTrue(divide.containsKey("d7c8n"));
+        assertTrue(divide.containsKey("e1g1"));
+    }
+
+    @Test
+    public void parallelPerft() throws FENFormatException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(197281, Perft.parallelPerft(new Board(), 4, pool));
+            assertEquals(97862, Perft.parallelPerft(new Board(KIWIPETE), 3, pool));
+            assertEquals(20, Perft.parallelPerft(new Board(), 1, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void boardIsNotChanged() throws FENFormatException {
+        Board board = new Board(KIWIPETE);
+        Perft.perft(board, 3);
+        Perft.parallelPerft(board, 3);
+        assertEquals(KIWIPETE, board.getFEN());
+        assertEquals(48, board.getPossibleMoves().size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import com.doublechess.core.piece.Piece;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PositionTest {
+    @Test
+    public void snapshotIsNotChangedByMoves() throws FENFormatException, IllegalMoveException {
+        Board board = new Board(300000, 300000, 2000);
+        Position initial = board.snapshot();
+        board.move("e2", "e4");
+        board.move("d7", "d5");
+
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", initial.getFEN());
+        assertTrue(initial.isWhiteToMove());
+        assertEquals(20, initial.getPossibleMovesCount());
+        assertTrue(initial.isPossibleMove("e2", "e4"));
+        assertEquals(Piece.PAWN, initial.getPieceType(CoreUtils.algebraicToPosition("e2")));
+        assertTrue(initial.isWhitePiece(CoreUtils.algebraicToPosition("e2")));
+        assertEquals(300000, initial.getWhiteTime());
+        assertEquals(2000, initial.getIncrement());
+
+        Position current = board.snapshot();
+        assertEquals(board.getFEN(), current.getFEN());
+        assertEquals(board.getPositionHash(), current.getPositionHash());
+        assertEquals(board.getPossibleMoves().size(), current.getPossibleMovesCount());
+        assertTrue(current.getPossibleMoves().contains("e4d5"));
+        assertEquals(-1, current.getPieceType(CoreUtils.algebraicToPosition("e2")));
+
+        board.unmakeMove();
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", board.snapshot().getFEN());
+        assertEquals(current.getFEN(), new Board(current.getFEN()).getFEN());
+    }
+
+    @Test
+    public void snapshotsPublishedOnRequest() throws FENFormatException, IllegalMoveException {
+        // Without publishing every call builds a view of the current position
+        Board board = new Board();
+        assertNotSame(board.snapshot(), board.snapshot());
+
+        board.setPublishingSnapshots(true);
+        Position published = board.snapshot();
+        assertSame(published, board.snapshot());
+        board.move("e4");
+        assertNotSame(published, board.snapshot());
+        assertEquals(board.getFEN(), board.snapshot().getFEN());
+
+        board.reset(Board.START_FEN, 0, 0, 0);
+        assertTrue(board.isPublishingSnapshots());
+        assertEquals(Board.START_FEN, board.snapshot().getFEN());
+        board.setPublishingSnapshots(false);
+        board.move("d4");
+        assertEquals(board.getFEN(), board.snapshot().getFEN());
+    }
+
+    @Test
+    public void snapshotReadWhileMoving() throws Exception {
+        Board board = new Board();
+        board.setPublishingSnapshots(true);
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Every snapshot seen by the reader has to describe a consistent position
+        Thread reader = new Thread(() -> {
+            try {
+                while (!finished.get()) {
+                    Position position = board.snapshot();
+                    Board copy = new Board(position.getFEN());
+                    assertEquals(copy.getPossibleMoves().size(), position.getPossibleMovesCount());
+                    assertEquals(copy.getPositionHash(), position.getPositionHash());
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < 500; i++) {
+            board.move("e2", "e4");
+            board.move("e7", "e5");
+            board.move("g1", "f3");
+            board.unmakeMove();
+            board.unmakeMove();
+            board.unmakeMove();
+        }
+        finished.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,109 @@
+package com.doublechess.core;
+
+import com.doublechess.core.exception.FENFormatException;
+import com.doublechess.core.exception.IllegalMoveException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchTest {
+    @Test
+    public void findsMates() throws FENFormatException {
+        Search search = new Search();
+        SearchResult result = search.search(new Board("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1"), 6);
+        assertEquals("d1d8", result.getPrincipalVariation().get(0));
+        assertEquals(Search.MATE - 1, result.getScore());
+        assertEquals(1, result.getMateIn());
+
+        // Scholar's mate is found among lots of other captures
+        Board board = new Board("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+        result = search.search(board, 4);
+        assertEquals(board.getPossibleMove("h5", "f7"), result.getBestMove());
+        assertEquals(1, result.getMateIn());
+
+        // The only move leads to mate
+        result = search.search(new Board("7k/8/6K1/8/8/8/8/R7 b - - 0 1"), 5);
+        assertEquals("h8g8", result.getPrincipalVariation().get(0));
+        assertEquals("a1a8", result.getPrincipalVariation().get(1));
+        assertEquals(-1, result.getMateIn());
+
+        // Nothing to search
+        result = search.search(new Board("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"), 5);
+        assertNull(result.getBestMove());
+        assertEquals(0, result.getScore());
+    }
+
+    @Test
+    public void winsMaterial() throws FENFormatException, IllegalMoveException {
+        Board board = new Board("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1");
+        SearchResult result = new Search().search(board, 4);
+        assertEquals(board.getPossibleMove("d1", "d5"), result.getBestMove());
+        assertTrue(result.getScore() >= 400);
+
+        // Board isn't touched by the search, the best move can be played on it
+        assertEquals("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1", board.getFEN());
+        board.makeMove(result.getBestMove());
+        assertEquals("4k3/8/8/3R4/8/8/8/4K3 b - - 0 1", board.getFEN());
+    }
+
+    @Test
+    public void limitsStopSearch() throws FENFormatException {
+        Board board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        Search search = new Search();
+
+        SearchResult result = search.search(board, 30, 0, 50000);
+        assertTrue(result.getDepth() >= 1 && result.getDepth() < 30);
+        assertTrue(result.getNodes() < 52000);
+        assertNotNull(result.getBestMove());
+        assertEquals(MoveCode.toCoordinates(MoveCode.of(result.getBestMove().getFrom(), result.getBestMove().getTo())),
+                result.getPrincipalVariation().get(0));
+
+        result = search.search(board, 30, 100, 0);
+        assertTrue(result.getDepth() >= 1 && result.getDepth() < 30);
+        assertTrue(result.getNanos() < 5_000_000_000L);
+    }
+
+    @Test
+    public void transpositionTable() {
+        TranspositionTable table = new TranspositionTable(1000);
+        assertEquals(1024, table.getCapacity());
+        table.newSearch();
+        table.store(12345, MoveCode.of(12, 28), -Search.MATE + 3, 7, TranspositionTable.LOWER);
+        long entry = table.probe(12345);
+        assertEquals(MoveCode.of(12, 28), TranspositionTable.move(entry));
+        assertEquals(-Search.MATE + 3, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(0, table.probe(12345 + 512));
+
+        // Deeper result of the same search stays, shallower one goes to the other slot of the bucket
+        table.store(12345 + 512, 0, 10, 3, TranspositionTable.EXACT);
+        assertEquals(7, TranspositionTable.depth(table.probe(12345)));
+        assertEquals(10, TranspositionTable.score(table.probe(12345 + 512)));
+
+        // Same position keeps its best move when stored without one
+        table.store(12345, 0, 20, 8, TranspositionTable.UPPER);
+        assertEquals(MoveCode.of(12, 28), TranspositionTable.move(table.probe(12345)));
+        assertEquals(8, TranspositionTable.depth(table.probe(12345)));
+    }
+
+    @Test
+    public void parallelSearch() throws FENFormatException {
+        try (ParallelSearch search = new ParallelSearch(4, new TranspositionTable(1 << 16))) {
+            Board board = new Board("r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4");
+            SearchResult result = search.search(board, 5);
+            assertEquals(board.getPossibleMove("h5", "f7"), result.getBestMove());
+            assertEquals(1, result.getMateIn());
+
+            board = new Board("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1");
+            result = search.search(board, 6);
+            assertEquals(board.getPossibleMove("d1", "d5"), result.getBestMove());
+            assertEquals(6, result.getDepth());
+
+            board = new Board("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+            result = search.search(board, 30, 100, 0);
+            assertTrue(result.getDepth() >= 1 && result.getDepth() < 30);
+            assertTrue(result.getNodes() > 0);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.doublechess.core;
+
+// Games shared by tests and benchmarks
+final class TestGames {
+    // Morphy vs Duke Karl / Count Isouard, Paris 1858, white mates on the 33rd ply
+    static final int OPERA_GAME_PLIES = 33;
+    static final String[] OPERA_GAME = {
+            "e4", "e5", "Nf3", "d6", "d4", "Bg4", "dxe5", "Bxf3", "Qxf3", "dxe5", "Bc4", "Nf6", "Qb3", "Qe7",
+            "Nc3", "c6", "Bg5", "b5", "Nxb5", "cxb5", "Bxb5+", "Nbd7", "O-O-O", "Rd8", "Rxd7", "Rxd7",
+            "Rd1", "Qe6", "Bxd7+", "Nxd7", "Qb8+", "Nxb8", "Rd8#"
+    };
+    // Same game as pairs of from and to squares
+    static final String[] OPERA_GAME_SQUARES = {
+            "e2", "e4", "e7", "e5", "g1", "f3", "d7", "d6", "d2", "d4", "c8", "g4",
+            "d4", "e5", "g4", "f3", "d1", "f3", "d6", "e5", "f1", "c4", "g8", "f6",
+            "f3", "b3", "d8", "e7", "b1", "c3", "c7", "c6", "c1", "g5", "b7", "b5",
+            "c3", "b5", "c6", "b5", "c4", "b5", "b8", "d7", "e1", "c1", "a8", "d8",
+            "d1", "d7", "d8", "d7", "h1", "d1", "e7", "e6", "b5", "d7", "f6", "d7",
+            "b3", "b8", "d7", "b8", "d1", "d8"
+    };
+
+    private TestGames() {
+    }
+}